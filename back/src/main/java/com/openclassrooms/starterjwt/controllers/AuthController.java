@@ -1,7 +1,12 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -9,41 +14,76 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.openclassrooms.starterjwt.exception.ErrorResponseWriter;
+import com.openclassrooms.starterjwt.exception.LoginCapacityExceededException;
+import com.openclassrooms.starterjwt.exception.LoginThrottledException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.response.EmailAvailabilityResponse;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.LoginThrottle;
+import com.openclassrooms.starterjwt.security.jwt.JwtParseResult;
+import com.openclassrooms.starterjwt.security.jwt.JwtTokenCache;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.RegisteredEmailFilter;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
+    private static final byte[] LOGIN_CAPACITY_EXCEEDED_BODY =
+            ErrorResponseWriter.encodeMessage("Error: Too many logins in progress, please retry later");
+    private static final byte[] LOGIN_THROTTLED_BODY =
+            ErrorResponseWriter.encodeMessage("Error: Too many login attempts, please retry later");
+
     private final AuthenticationManager authenticationManager;
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final LoginThrottle loginThrottle;
+    private final RefreshTokenStore refreshTokenStore;
+    private final TokenRevocationList tokenRevocationList;
+    private final JwtTokenCache jwtTokenCache;
+    private final RegisteredEmailFilter registeredEmailFilter;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            LoginThrottle loginThrottle,
+            RefreshTokenStore refreshTokenStore,
+            TokenRevocationList tokenRevocationList,
+            JwtTokenCache jwtTokenCache,
+            RegisteredEmailFilter registeredEmailFilter) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.loginThrottle = loginThrottle;
+        this.refreshTokenStore = refreshTokenStore;
+        this.tokenRevocationList = tokenRevocationList;
+        this.jwtTokenCache = jwtTokenCache;
+        this.registeredEmailFilter = registeredEmailFilter;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        loginThrottle.acquire(loginRequest.getEmail(), request.getRemoteAddr());
 
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
@@ -52,26 +92,86 @@ public class AuthController {
         String jwt = jwtUtils.generateJwtToken(authentication);
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+        return ResponseEntity.ok(new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getFirstName(),
+                userDetails.getLastName(),
+                userDetails.getAdmin(),
+                refreshTokenStore.issue(userDetails)));
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest) {
+        UserDetailsImpl issuedTo = refreshTokenStore.consume(refreshTokenRequest.getRefreshToken());
+        // the new tokens must reflect the stored user, not the snapshot taken at login
+        User user = issuedTo == null ? null : userRepository.findById(issuedTo.getId()).orElse(null);
+        if (user == null) {
+            return ResponseEntity
+                    .status(HttpStatus.UNAUTHORIZED)
+                    .body(new MessageResponse("Error: Invalid or expired refresh token"));
         }
 
+        UserDetailsImpl userDetails = UserDetailsImpl
+                .builder()
+                .id(user.getId())
+                .username(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .admin(user.isAdmin())
+                .build();
+
+        String jwt = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
         return ResponseEntity.ok(new JwtResponse(jwt,
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                userDetails.getAdmin(),
+                refreshTokenStore.issue(userDetails)));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<?> logoutUser(HttpServletRequest request,
+            @RequestBody(required = false) RefreshTokenRequest refreshTokenRequest) {
+        String jwt = JwtUtils.parseBearerToken(request);
+        JwtParseResult result = jwtUtils.parse(jwt);
+        if (result.isValid() && result.getClaims().getExpiration() != null) {
+            tokenRevocationList.revokeToken(jwt, result.getClaims().getExpiration().getTime());
+            jwtTokenCache.evict(jwt);
+        }
+
+        if (refreshTokenRequest != null) {
+            refreshTokenStore.consume(refreshTokenRequest.getRefreshToken());
+        }
+
+        return ResponseEntity.ok(new MessageResponse("User logged out successfully!"));
+    }
+
+    @ExceptionHandler(LoginCapacityExceededException.class)
+    public ResponseEntity<?> loginCapacityExceeded(LoginCapacityExceededException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(LOGIN_CAPACITY_EXCEEDED_BODY);
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<?> loginThrottled(LoginThrottledException e) {
+        return ResponseEntity
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(LOGIN_THROTTLED_BODY);
     }
 
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
+        if (registeredEmailFilter.isTaken(signUpRequest.getEmail())) {
+            return emailAlreadyTaken();
         }
 
         // Create new user's account
@@ -81,8 +181,24 @@ public class AuthController {
                 passwordEncoder.encode(signUpRequest.getPassword()),
                 false);
 
-        userRepository.save(user);
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            return emailAlreadyTaken();
+        }
+        registeredEmailFilter.add(user.getEmail());
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    @GetMapping("/email-available")
+    public ResponseEntity<?> isEmailAvailable(@RequestParam("email") String email) {
+        return ResponseEntity.ok(new EmailAvailabilityResponse(email, !registeredEmailFilter.isTaken(email)));
+    }
+
+    private ResponseEntity<?> emailAlreadyTaken() {
+        return ResponseEntity
+                .badRequest()
+                .body(new MessageResponse("Error: Email is already taken!"));
+    }
 }
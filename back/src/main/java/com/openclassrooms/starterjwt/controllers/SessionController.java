@@ -4,27 +4,47 @@ package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.payload.request.SessionSeriesRequest;
+import com.openclassrooms.starterjwt.repository.SessionFilter;
+import com.openclassrooms.starterjwt.payload.response.WaitlistPositionResponse;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionPage;
+import com.openclassrooms.starterjwt.services.SessionSeriesService;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.WaitlistService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
-import java.util.List;
+import java.util.Date;
 
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = SessionController.NEXT_CURSOR_HEADER)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final WaitlistService waitlistService;
+    private final SessionSeriesService sessionSeriesService;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             WaitlistService waitlistService,
+                             SessionSeriesService sessionSeriesService) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.waitlistService = waitlistService;
+        this.sessionSeriesService = sessionSeriesService;
     }
 
     @GetMapping("/{id}")
@@ -42,11 +62,38 @@ public class SessionController {
         }
     }
 
+    /**
+     * Returns one page of session summaries ordered by date, optionally filtered by dates, teacher, name prefix and free seats.
+     * The cursor of the next page, if any, is sent in the X-Next-Cursor header : it must be sent back with the same filters.
+     */
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "size", defaultValue = "20") int size,
+                                     @RequestParam(value = "sort", defaultValue = "asc") String sort,
+                                     @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                     @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                     @RequestParam(value = "name", required = false) String name,
+                                     @RequestParam(value = "freeSeats", defaultValue = "false") boolean freeSeats) {
+        Sort.Direction direction = Sort.Direction.fromOptionalString(sort).orElse(null);
+        if (direction == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+        SessionFilter filter = SessionFilter.builder()
+                .from(from)
+                .to(to)
+                .teacherId(teacherId)
+                .namePrefix(name)
+                .freeSeats(freeSeats)
+                .build();
+        SessionPage page = this.sessionService.findPage(cursor, filter, direction, size, currentUserId());
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getSessions());
     }
 
     @PostMapping()
@@ -59,6 +106,35 @@ public class SessionController {
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
+    /**
+     * Creates every occurrence of a recurring session, and returns the series id with the generated dates.
+     */
+    @PostMapping("series")
+    public ResponseEntity<?> createSeries(@Valid @RequestBody SessionSeriesRequest request) {
+        return ResponseEntity.ok().body(this.sessionSeriesService.create(request));
+    }
+
+    /**
+     * Books the user on every upcoming session of the series, in one go : 409 Conflict if any of them is full.
+     */
+    @PostMapping("series/{seriesId}/participate/{userId}")
+    public ResponseEntity<?> participateSeries(@PathVariable("seriesId") String seriesId, @PathVariable("userId") String userId) {
+        try {
+            return ResponseEntity.ok().body(this.sessionSeriesService.participate(Long.parseLong(seriesId), Long.parseLong(userId)));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("series/{seriesId}/participate/{userId}")
+    public ResponseEntity<?> noLongerParticipateSeries(@PathVariable("seriesId") String seriesId, @PathVariable("userId") String userId) {
+        try {
+            return ResponseEntity.ok().body(this.sessionSeriesService.noLongerParticipate(Long.parseLong(seriesId), Long.parseLong(userId)));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
         try {
@@ -97,6 +173,18 @@ public class SessionController {
         }
     }
 
+    /**
+     * Books every user of the list at once and returns the outcome for each of them. Only a missing session fails the whole request.
+     */
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @Valid @RequestBody BulkParticipationRequest request) {
+        try {
+            return ResponseEntity.ok().body(this.sessionService.participateAll(Long.parseLong(id), request.getUserIds()));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
@@ -107,4 +195,48 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @PostMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> joinWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            long position = this.waitlistService.join(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionResponse(Long.parseLong(id), Long.parseLong(userId), position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Returns the position of the user in the waitlist, 404 once he has left it or been promoted to a seat.
+     */
+    @GetMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> getWaitlistPosition(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            long position = this.waitlistService.getPosition(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().body(new WaitlistPositionResponse(Long.parseLong(id), Long.parseLong(userId), position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            this.waitlistService.leave(Long.parseLong(id), Long.parseLong(userId));
+
+            return ResponseEntity.ok().build();
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl) {
+            return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+        }
+        return null;
+    }
 }
@@ -0,0 +1,34 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Row of the session list : the participants are only counted, never loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSummaryDto {
+    private Long id;
+
+    private String name;
+
+    private String description;
+
+    private Date date;
+
+    private Long teacher_id;
+
+    private Integer capacity;
+
+    private long participantCount;
+
+    /**
+     * Whether the authenticated user booked this session.
+     */
+    private boolean participating;
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.exception;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+
+/**
+ * Writes the JSON error bodies of the reject paths. The "status" and "error" members are encoded once per
+ * status code, and the variable members are streamed through a shared factory, so no mapper or map is built
+ * per response.
+ */
+@Component
+public class ErrorResponseWriter {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory()
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .setRootValueSeparator(null);
+
+  private static final ObjectWriter MESSAGE_WRITER = new ObjectMapper().writerFor(MessageResponse.class);
+
+  private static final Map<HttpStatus, byte[]> PREFIXES = new EnumMap<>(HttpStatus.class);
+
+  static {
+    for (HttpStatus status : HttpStatus.values()) {
+      String prefix = "{\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase() + "\"";
+      PREFIXES.put(status, prefix.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Writes {"status", "error", "message", "path"} to the response.
+   */
+  public void write(HttpServletResponse response, HttpStatus status, String message, String path) throws IOException {
+    response.setStatus(status.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+    ServletOutputStream out = response.getOutputStream();
+    out.write(PREFIXES.get(status));
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+      generator.writeRaw(",\"message\":");
+      writeNullableString(generator, message);
+      generator.writeRaw(",\"path\":");
+      writeNullableString(generator, path);
+      generator.writeRaw('}');
+    }
+  }
+
+  /**
+   * Encodes a {@link MessageResponse} body once, for responses whose message never changes.
+   */
+  public static byte[] encodeMessage(String message) {
+    try {
+      return MESSAGE_WRITER.writeValueAsBytes(new MessageResponse(message));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Unable to encode the message " + message, e);
+    }
+  }
+
+  private static void writeNullableString(JsonGenerator generator, String value) throws IOException {
+    if (value == null) {
+      generator.writeNull();
+    } else {
+      generator.writeString(value);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.SERVICE_UNAVAILABLE)
+public class LoginCapacityExceededException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public LoginCapacityExceededException(int retryAfterSeconds) {
+        super(null, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -3,6 +3,12 @@ package com.openclassrooms.starterjwt.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * Only used for control flow by the services, so it is built without a stack trace (as the other exceptions here).
+ */
 @ResponseStatus(value= HttpStatus.NOT_FOUND)
 public class NotFoundException extends RuntimeException {
+    public NotFoundException() {
+        super(null, null, false, false);
+    }
 }
@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.CONFLICT)
+public class SessionFullException extends RuntimeException {
+    public SessionFullException() {
+        super(null, null, false, false);
+    }
+}
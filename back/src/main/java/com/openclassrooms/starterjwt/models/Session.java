@@ -3,11 +3,13 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -41,11 +43,33 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
-    @OneToOne
+    /**
+     * Maximum number of participants, null for no limit.
+     */
+    @Min(1)
+    private Integer capacity;
+
+    /**
+     * Number of rows in PARTICIPATE for this session, kept up to date by the booking statements.
+     */
+    @Column(name = "seats_taken")
+    private int seatsTaken;
+
+    /**
+     * Series the session was generated by, null for a single session. Only written by the series insert.
+     */
+    @Column(name = "series_id", insertable = false, updatable = false)
+    private Long seriesId;
+
+    // associations are lazy : each repository method picks what it needs (entity graph, or batches when several sessions are loaded)
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
+    @ToString.Exclude
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany
+    @BatchSize(size = 50)
+    @ToString.Exclude
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
@@ -59,4 +83,13 @@ public class Session {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    /**
+     * A session saved as a whole (create, update) rewrites its participant list : the counter follows it.
+     */
+    @PrePersist
+    @PreUpdate
+    void countSeatsTaken() {
+        this.seatsTaken = this.users != null ? this.users.size() : 0;
+    }
 }
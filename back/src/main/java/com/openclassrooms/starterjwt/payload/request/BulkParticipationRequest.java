@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import java.util.List;
+
+import javax.validation.constraints.*;
+
+import lombok.Data;
+
+@Data
+public class BulkParticipationRequest {
+  @NotEmpty
+  @Size(max = 500)
+  private List<@NotNull Long> userIds;
+}
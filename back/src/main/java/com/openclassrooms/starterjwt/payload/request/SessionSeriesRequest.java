@@ -0,0 +1,54 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import java.util.Date;
+
+import javax.validation.constraints.*;
+
+import lombok.Data;
+
+@Data
+public class SessionSeriesRequest {
+  public enum Frequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY
+  }
+
+  @NotBlank
+  @Size(max = 50)
+  private String name;
+
+  @NotNull
+  @Size(max = 2500)
+  private String description;
+
+  @NotNull
+  private Long teacher_id;
+
+  @Min(1)
+  private Integer capacity;
+
+  /**
+   * Date of the first occurrence, the next ones keep its time of day.
+   */
+  @NotNull
+  private Date start;
+
+  @NotNull
+  private Frequency frequency;
+
+  /**
+   * Every interval days / weeks / months.
+   */
+  @Min(1)
+  @Max(52)
+  private int interval = 1;
+
+  /**
+   * The series ends after this many occurrences, or on the until date (inclusive) : exactly one of them is required.
+   */
+  @Min(1)
+  private Integer occurrences;
+
+  private Date until;
+}
@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class BulkParticipationResponse {
+  private int enrolled;
+  private int skipped;
+  private int rejected;
+  private final List<BulkParticipationRow> rows = new ArrayList<>();
+
+  public void add(BulkParticipationRow row) {
+    rows.add(row);
+    switch (row.getStatus()) {
+      case ENROLLED:
+        enrolled++;
+        break;
+      case ALREADY_BOOKED:
+      case DUPLICATE:
+        skipped++;
+        break;
+      default:
+        rejected++;
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkParticipationRow {
+  public enum Status {
+    ENROLLED,
+    ALREADY_BOOKED,
+    DUPLICATE,
+    USER_NOT_FOUND,
+    SESSION_FULL
+  }
+
+  private Long userId;
+  private Status status;
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+@Getter
+public class BulkRegistrationResponse {
+  private int created;
+  private int duplicates;
+  private int invalid;
+  private final List<BulkRegistrationRow> rows = new ArrayList<>();
+
+  public void add(BulkRegistrationRow row) {
+    rows.add(row);
+    switch (row.getStatus()) {
+      case CREATED:
+        created++;
+        break;
+      case DUPLICATE:
+        duplicates++;
+        break;
+      default:
+        invalid++;
+    }
+  }
+}
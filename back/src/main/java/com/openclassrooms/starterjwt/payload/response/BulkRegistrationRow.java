@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkRegistrationRow {
+  public enum Status {
+    CREATED,
+    DUPLICATE,
+    INVALID
+  }
+
+  private int row;
+  private String email;
+  private Status status;
+  private String message;
+}
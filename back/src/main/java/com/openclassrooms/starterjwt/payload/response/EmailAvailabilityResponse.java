@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class EmailAvailabilityResponse {
+  private String email;
+  private boolean available;
+}
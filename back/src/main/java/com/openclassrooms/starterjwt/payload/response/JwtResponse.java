@@ -15,6 +15,8 @@ public class JwtResponse {
 
   private Boolean admin;
 
+  private String refreshToken;
+
   public JwtResponse(String accessToken, Long id, String username,String firstName, String lastName, Boolean admin) {
     this.token = accessToken;
     this.id = id;
@@ -23,4 +25,9 @@ public class JwtResponse {
     this.username = username;
     this.admin = admin;
   }
+
+  public JwtResponse(String accessToken, Long id, String username,String firstName, String lastName, Boolean admin, String refreshToken) {
+    this(accessToken, id, username, firstName, lastName, admin);
+    this.refreshToken = refreshToken;
+  }
 }
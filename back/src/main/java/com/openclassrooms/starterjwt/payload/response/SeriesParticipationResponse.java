@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SeriesParticipationResponse {
+  private Long seriesId;
+  private int updated;
+  private int skipped;
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.Date;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SessionSeriesResponse {
+  private Long seriesId;
+  private int occurrences;
+  private List<Date> dates;
+}
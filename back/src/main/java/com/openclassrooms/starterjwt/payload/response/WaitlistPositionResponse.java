@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class WaitlistPositionResponse {
+  private Long sessionId;
+  private Long userId;
+  private long position;
+}
@@ -0,0 +1,21 @@
+package com.openclassrooms.starterjwt.repository;
+
+import lombok.Getter;
+
+/**
+ * One upcoming session of a series, as seen by a user booking or cancelling the whole series.
+ */
+@Getter
+public final class SeriesSeat {
+  private final Long sessionId;
+
+  private final boolean full;
+
+  private final boolean booked;
+
+  public SeriesSeat(Long sessionId, boolean full, boolean booked) {
+    this.sessionId = sessionId;
+    this.full = full;
+    this.booked = booked;
+  }
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+
+import lombok.Getter;
+
+/**
+ * Position of the last session of a page in the (date, id) ordering, handed to the client as an opaque string.
+ */
+@Getter
+public final class SessionCursor {
+  private final Date date;
+
+  private final Long id;
+
+  public SessionCursor(Date date, Long id) {
+    this.date = date;
+    this.id = id;
+  }
+
+  public static SessionCursor of(SessionSummaryDto session) {
+    return new SessionCursor(session.getDate(), session.getId());
+  }
+
+  public String encode() {
+    String position = date.getTime() + ":" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Throws an IllegalArgumentException if the value was not produced by {@link #encode()}.
+   */
+  public static SessionCursor decode(String value) {
+    String position = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.US_ASCII);
+    int separator = position.indexOf(':');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Malformed session cursor");
+    }
+    return new SessionCursor(new Date(Long.parseLong(position.substring(0, separator))),
+        Long.valueOf(position.substring(separator + 1)));
+  }
+}
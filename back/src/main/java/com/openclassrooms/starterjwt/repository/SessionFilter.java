@@ -0,0 +1,24 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.Date;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Optional criteria of the session list, each one backed by an index of SESSIONS : date bounds (idx_sessions_date_id),
+ * teacher (idx_sessions_teacher_date), name prefix (idx_sessions_name) and free seats (idx_sessions_free_date).
+ */
+@Value
+@Builder
+public class SessionFilter {
+  Date from;
+
+  Date to;
+
+  Long teacherId;
+
+  String namePrefix;
+
+  boolean freeSeats;
+}
@@ -1,9 +1,62 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRepositoryCustom {
+    /**
+     * A single session is always needed with its participants (detail view, participation changes) : they come in the same select.
+     */
+    @Override
+    @EntityGraph(attributePaths = "users")
+    Optional<Session> findById(Long id);
+
+    /**
+     * Takes one seat if the session has any left. The row lock this takes is what serialises concurrent bookings :
+     * it must be the first statement of the booking transaction, before the PARTICIPATE insert (whose foreign key check
+     * would otherwise take a shared lock on the same row first and deadlock with the other bookings).
+     * A seat released while users are waiting belongs to the first of them, so the booking is refused until the promoter
+     * has emptied the waitlist. Returns 0 if the session doesn't exist, is full or has a waitlist.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken + 1"
+            + " WHERE id = :sessionId AND (capacity IS NULL OR seats_taken < capacity)"
+            + " AND NOT EXISTS (SELECT 1 FROM WAITLIST w WHERE w.session_id = :sessionId)", nativeQuery = true)
+    int reserveSeat(@Param("sessionId") Long sessionId);
+
+    /**
+     * Returns 0 if the session doesn't exist or has no participant.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken - 1 WHERE id = :sessionId AND seats_taken > 0", nativeQuery = true)
+    int releaseSeat(@Param("sessionId") Long sessionId);
+
+    /**
+     * Books the user on the session with a single row insert. Returns 0 instead of failing when the session or the user
+     * doesn't exist, or when the (session_id, user_id) key is already taken : concurrent duplicates can't create a second row.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO PARTICIPATE (session_id, user_id)"
+            + " SELECT s.id, u.id FROM SESSIONS s, USERS u WHERE s.id = :sessionId AND u.id = :userId", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Returns 0 if the user wasn't booked on the session.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
 }
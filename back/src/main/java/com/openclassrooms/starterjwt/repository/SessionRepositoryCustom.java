@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.Sort;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.payload.request.SessionSeriesRequest;
+
+public interface SessionRepositoryCustom {
+  /**
+   * Returns at most limit session summaries ordered by date then id, starting right after the cursor (or from the start if null).
+   * The filter's date bounds are inclusive. The teacher and free seats criteria are equalities leading an index that ends with
+   * (date, id), so the page is read in index order and a page deep into the history costs the same as the first one.
+   * The name prefix is a range of its own index instead, its matches are sorted.
+   * participating tells whether userId (may be null) is one of the participants.
+   */
+  List<SessionSummaryDto> findSummaryPage(SessionFilter filter, SessionCursor after, Sort.Direction direction, Long userId, int limit);
+
+  /**
+   * Locks the session row for the rest of the transaction, the same lock every booking takes first, and returns its free
+   * seats : Integer.MAX_VALUE if it has no capacity, 0 while users are waiting for it (the released seats are theirs),
+   * null if it doesn't exist.
+   */
+  Integer lockFreeSeats(Long sessionId);
+
+  /**
+   * Maps each of the userIds that exists to whether the user is already booked on the session, in one query.
+   */
+  Map<Long, Boolean> findBookingStates(Long sessionId, Collection<Long> userIds);
+
+  /**
+   * Books the users with one JDBC batch of PARTICIPATE inserts, then counts them in seats_taken. The caller must hold the
+   * session lock and have checked the seats and the users.
+   */
+  void addParticipants(Long sessionId, List<Long> userIds);
+
+  /**
+   * Records the series then inserts one session per date with a single JDBC batch, all linked to the series.
+   * Returns the id of the series.
+   */
+  Long insertSeries(SessionSeriesRequest series, List<Date> dates);
+
+  /**
+   * Locks the upcoming sessions of the series in id order (so two series bookings can't deadlock) and tells, for each,
+   * whether it's full (or has users waiting for its released seats) and whether the user is booked on it. Must run in a transaction.
+   */
+  List<SeriesSeat> lockSeriesSeats(Long seriesId, Long userId);
+
+  /**
+   * Books the user on every session with one JDBC batch, then takes their seats with one update. The caller must hold the
+   * session locks and have checked the seats.
+   */
+  void addParticipations(Long userId, List<Long> sessionIds);
+
+  /**
+   * The reverse of addParticipations, for sessions the user is known to be booked on.
+   */
+  void removeParticipations(Long userId, List<Long> sessionIds);
+
+  /**
+   * Locks every session the user is booked on, in id order like lockSeriesSeats, and returns their ids. Must run in a transaction.
+   */
+  List<Long> lockBookedSessions(Long userId);
+}
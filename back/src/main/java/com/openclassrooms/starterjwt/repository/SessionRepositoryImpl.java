@@ -0,0 +1,214 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.payload.request.SessionSeriesRequest;
+
+public class SessionRepositoryImpl implements SessionRepositoryCustom {
+  // the booking statements keep seats_taken current, and the EXISTS subquery only runs for the rows of the page
+  private static final String SELECT_SUMMARY =
+      "SELECT s.id, s.name, s.description, s.date, s.teacher_id, s.capacity, s.seats_taken,"
+          + " EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = s.id AND p.user_id = ?)"
+          + " FROM SESSIONS s WHERE 1 = 1";
+
+  private static final String INSERT_SESSION =
+      "INSERT INTO SESSIONS (name, description, date, teacher_id, capacity, series_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public SessionRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public List<SessionSummaryDto> findSummaryPage(SessionFilter filter, SessionCursor after, Sort.Direction direction, Long userId, int limit) {
+    boolean ascending = direction.isAscending();
+    StringBuilder sql = new StringBuilder(SELECT_SUMMARY);
+    List<Object> parameters = new ArrayList<>();
+    parameters.add(userId);
+
+    if (filter.getTeacherId() != null) {
+      sql.append(" AND s.teacher_id = ?");
+      parameters.add(filter.getTeacherId());
+    }
+    if (filter.getNamePrefix() != null && !filter.getNamePrefix().isEmpty()) {
+      // a prefix is still a range of the index, as long as its own wildcards are escaped
+      sql.append(" AND s.name LIKE ?");
+      parameters.add(filter.getNamePrefix().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+    }
+    if (filter.isFreeSeats()) {
+      sql.append(" AND s.is_full = FALSE");
+    }
+    if (filter.getFrom() != null) {
+      sql.append(" AND s.date >= ?");
+      parameters.add(new Timestamp(filter.getFrom().getTime()));
+    }
+    if (filter.getTo() != null) {
+      sql.append(" AND s.date <= ?");
+      parameters.add(new Timestamp(filter.getTo().getTime()));
+    }
+    if (after != null) {
+      // the leading bound on date keeps this a range scan of the index, the id only breaks ties
+      String operator = ascending ? ">" : "<";
+      Timestamp afterDate = new Timestamp(after.getDate().getTime());
+      sql.append(" AND s.date ").append(operator).append("= ?")
+          .append(" AND (s.date ").append(operator).append(" ? OR s.id ").append(operator).append(" ?)");
+      parameters.add(afterDate);
+      parameters.add(afterDate);
+      parameters.add(after.getId());
+    }
+    String order = ascending ? "ASC" : "DESC";
+    sql.append(" ORDER BY s.date ").append(order).append(", s.id ").append(order).append(" LIMIT ?");
+    parameters.add(limit);
+
+    return jdbcTemplate.query(sql.toString(), (resultSet, rowNum) -> {
+      Timestamp date = resultSet.getTimestamp(4);
+      Long teacherId = resultSet.getObject(5) != null ? resultSet.getLong(5) : null;
+      Integer capacity = resultSet.getObject(6) != null ? resultSet.getInt(6) : null;
+      return new SessionSummaryDto(
+          resultSet.getLong(1),
+          resultSet.getString(2),
+          resultSet.getString(3),
+          date != null ? new Date(date.getTime()) : null,
+          teacherId,
+          capacity,
+          resultSet.getLong(7),
+          resultSet.getBoolean(8));
+    }, parameters.toArray());
+  }
+
+  @Override
+  public Integer lockFreeSeats(Long sessionId) {
+    return jdbcTemplate.query("SELECT s.capacity, s.seats_taken, EXISTS (SELECT 1 FROM WAITLIST w WHERE w.session_id = s.id)"
+        + " FROM SESSIONS s WHERE s.id = ? FOR UPDATE", resultSet -> {
+      if (!resultSet.next()) {
+        return null;
+      }
+      if (resultSet.getBoolean(3)) {
+        return 0;
+      }
+      int capacity = resultSet.getInt(1);
+      return resultSet.wasNull() ? Integer.MAX_VALUE : capacity - resultSet.getInt(2);
+    }, sessionId);
+  }
+
+  @Override
+  public Map<Long, Boolean> findBookingStates(Long sessionId, Collection<Long> userIds) {
+    Map<Long, Boolean> states = new HashMap<>();
+    if (userIds.isEmpty()) {
+      return states;
+    }
+
+    List<Object> parameters = new ArrayList<>(userIds.size() + 1);
+    parameters.add(sessionId);
+    parameters.addAll(userIds);
+    String placeholders = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+    jdbcTemplate.query("SELECT u.id, EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = ? AND p.user_id = u.id)"
+        + " FROM USERS u WHERE u.id IN (" + placeholders + ")", resultSet -> {
+      states.put(resultSet.getLong(1), resultSet.getBoolean(2));
+    }, parameters.toArray());
+    return states;
+  }
+
+  @Override
+  public void addParticipants(Long sessionId, List<Long> userIds) {
+    if (userIds.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", userIds, userIds.size(), (statement, userId) -> {
+      statement.setLong(1, sessionId);
+      statement.setLong(2, userId);
+    });
+    jdbcTemplate.update("UPDATE SESSIONS SET seats_taken = seats_taken + ? WHERE id = ?", userIds.size(), sessionId);
+  }
+
+  @Override
+  public Long insertSeries(SessionSeriesRequest series, List<Date> dates) {
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    jdbcTemplate.update(connection -> {
+      PreparedStatement statement = connection.prepareStatement(
+          "INSERT INTO SESSION_SERIES (frequency, interval_count, occurrences) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+      statement.setString(1, series.getFrequency().name());
+      statement.setInt(2, series.getInterval());
+      statement.setInt(3, dates.size());
+      return statement;
+    }, keyHolder);
+    Long seriesId = keyHolder.getKey().longValue();
+
+    // with rewriteBatchedStatements, the driver sends the batch as multi-row inserts
+    jdbcTemplate.batchUpdate(INSERT_SESSION, dates, dates.size(), (statement, date) -> {
+      statement.setString(1, series.getName());
+      statement.setString(2, series.getDescription());
+      statement.setTimestamp(3, new Timestamp(date.getTime()));
+      statement.setLong(4, series.getTeacher_id());
+      if (series.getCapacity() != null) {
+        statement.setInt(5, series.getCapacity());
+      } else {
+        statement.setNull(5, Types.INTEGER);
+      }
+      statement.setLong(6, seriesId);
+    });
+    return seriesId;
+  }
+
+  @Override
+  public List<SeriesSeat> lockSeriesSeats(Long seriesId, Long userId) {
+    return jdbcTemplate.query("SELECT s.id, s.capacity IS NOT NULL AND s.seats_taken >= s.capacity"
+        + " OR EXISTS (SELECT 1 FROM WAITLIST w WHERE w.session_id = s.id),"
+        + " EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = s.id AND p.user_id = ?)"
+        + " FROM SESSIONS s WHERE s.series_id = ? AND s.date >= CURRENT_TIMESTAMP ORDER BY s.id FOR UPDATE",
+        (resultSet, rowNum) -> new SeriesSeat(resultSet.getLong(1), resultSet.getBoolean(2), resultSet.getBoolean(3)),
+        userId, seriesId);
+  }
+
+  @Override
+  public void addParticipations(Long userId, List<Long> sessionIds) {
+    if (sessionIds.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", sessionIds, sessionIds.size(), (statement, sessionId) -> {
+      statement.setLong(1, sessionId);
+      statement.setLong(2, userId);
+    });
+    updateSeatsTaken(sessionIds, "+ 1");
+  }
+
+  @Override
+  public void removeParticipations(Long userId, List<Long> sessionIds) {
+    if (sessionIds.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate("DELETE FROM PARTICIPATE WHERE session_id = ? AND user_id = ?", sessionIds, sessionIds.size(), (statement, sessionId) -> {
+      statement.setLong(1, sessionId);
+      statement.setLong(2, userId);
+    });
+    updateSeatsTaken(sessionIds, "- 1");
+  }
+
+  @Override
+  public List<Long> lockBookedSessions(Long userId) {
+    return jdbcTemplate.queryForList("SELECT s.id FROM SESSIONS s"
+        + " WHERE s.id IN (SELECT p.session_id FROM PARTICIPATE p WHERE p.user_id = ?) ORDER BY s.id FOR UPDATE", Long.class, userId);
+  }
+
+  private void updateSeatsTaken(List<Long> sessionIds, String change) {
+    String placeholders = String.join(", ", Collections.nCopies(sessionIds.size(), "?"));
+    jdbcTemplate.update("UPDATE SESSIONS SET seats_taken = seats_taken " + change + " WHERE id IN (" + placeholders + ")", sessionIds.toArray());
+  }
+}
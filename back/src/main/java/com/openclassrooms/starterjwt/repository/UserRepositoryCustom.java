@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.openclassrooms.starterjwt.models.User;
+
+public interface UserRepositoryCustom {
+  /**
+   * Inserts the users with JDBC batches, bypassing the persistence context.
+   * Throws a DuplicateKeyException, and inserts nothing, if any email is already taken.
+   */
+  void insertAll(List<User> users);
+
+  /**
+   * Streams every registered email without loading the users.
+   */
+  void forEachEmail(Consumer<String> consumer);
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.models.User;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+  private static final String INSERT_USER =
+      "INSERT INTO USERS (email, last_name, first_name, password, admin) VALUES (?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public UserRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  @Transactional
+  public void insertAll(List<User> users) {
+    jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), (statement, user) -> {
+      statement.setString(1, user.getEmail());
+      statement.setString(2, user.getLastName());
+      statement.setString(3, user.getFirstName());
+      statement.setString(4, user.getPassword());
+      statement.setBoolean(5, user.isAdmin());
+    });
+  }
+
+  @Override
+  public void forEachEmail(Consumer<String> consumer) {
+    jdbcTemplate.query("SELECT email FROM USERS", resultSet -> {
+      consumer.accept(resultSet.getString(1));
+    });
+  }
+}
@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WaitlistRepository extends JpaRepository<WaitlistEntry, Long>, WaitlistRepositoryCustom {
+    /**
+     * Queues the user if the session is full, or has a released seat still waiting for the promoter, and he isn't booked
+     * on it yet. Returns 0 otherwise, or if the session, the user or the entry doesn't exist / already exists.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO WAITLIST (session_id, user_id)"
+            + " SELECT s.id, u.id FROM SESSIONS s, USERS u WHERE s.id = :sessionId AND u.id = :userId "
+            + " AND (s.seats_taken >= s.capacity OR EXISTS (SELECT 1 FROM WAITLIST w WHERE w.session_id = s.id))"
+            + " AND NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = s.id AND p.user_id = u.id)", nativeQuery = true)
+    int enqueue(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM WAITLIST WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int dequeue(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    Optional<WaitlistEntry> findBySessionIdAndUserId(Long sessionId, Long userId);
+
+    long countBySessionIdAndIdLessThanEqual(Long sessionId, Long id);
+
+    /**
+     * Sessions with both free seats and waiting users, which only happens if a promotion was missed.
+     */
+    @Query(value = "SELECT DISTINCT w.session_id FROM WAITLIST w JOIN SESSIONS s ON s.id = w.session_id"
+            + " WHERE s.capacity IS NULL OR s.seats_taken < s.capacity", nativeQuery = true)
+    List<Long> findSessionsToPromote();
+}
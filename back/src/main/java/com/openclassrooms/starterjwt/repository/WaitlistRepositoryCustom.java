@@ -0,0 +1,9 @@
+package com.openclassrooms.starterjwt.repository;
+
+public interface WaitlistRepositoryCustom {
+  /**
+   * Moves the first waiting users of the session into its free seats, at most limit of them, in one transaction.
+   * Returns how many waitlist entries were consumed : 0 once the session is full or nobody is waiting.
+   */
+  int promote(Long sessionId, int limit);
+}
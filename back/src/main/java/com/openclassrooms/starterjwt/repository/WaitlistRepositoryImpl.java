@@ -0,0 +1,44 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+public class WaitlistRepositoryImpl implements WaitlistRepositoryCustom {
+  private final JdbcTemplate jdbcTemplate;
+
+  public WaitlistRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  @Transactional
+  public int promote(Long sessionId, int limit) {
+    // the session row is locked first, in the same order as the bookings, and counts the seats no one can take meanwhile
+    Integer freeSeats = jdbcTemplate.query("SELECT capacity, seats_taken FROM SESSIONS WHERE id = ? FOR UPDATE", resultSet -> {
+      if (!resultSet.next()) {
+        return 0;
+      }
+      int capacity = resultSet.getInt(1);
+      return resultSet.wasNull() ? limit : capacity - resultSet.getInt(2);
+    }, sessionId);
+    if (freeSeats == null || freeSeats <= 0) {
+      return 0;
+    }
+
+    List<Long> waiting = jdbcTemplate.queryForList(
+        "SELECT id FROM WAITLIST WHERE session_id = ? ORDER BY id LIMIT ? FOR UPDATE", Long.class, sessionId, Math.min(freeSeats, limit));
+    if (waiting.isEmpty()) {
+      return 0;
+    }
+
+    // FIFO : the batch is every entry up to the last selected id. Users who booked directly in the meantime are skipped
+    Long lastId = waiting.get(waiting.size() - 1);
+    int promoted = jdbcTemplate.update("INSERT IGNORE INTO PARTICIPATE (session_id, user_id)"
+        + " SELECT session_id, user_id FROM WAITLIST WHERE session_id = ? AND id <= ?", sessionId, lastId);
+    jdbcTemplate.update("DELETE FROM WAITLIST WHERE session_id = ? AND id <= ?", sessionId, lastId);
+    jdbcTemplate.update("UPDATE SESSIONS SET seats_taken = seats_taken + ? WHERE id = ?", promoted, sessionId);
+    return waiting.size();
+  }
+}
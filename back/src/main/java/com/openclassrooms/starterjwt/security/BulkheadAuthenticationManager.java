@@ -0,0 +1,138 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.Authentication;
+
+import com.openclassrooms.starterjwt.exception.LoginCapacityExceededException;
+
+/**
+ * Runs password verification on its own bounded pool so that a login burst cannot take every request thread.
+ * Once the pool and its queue are full, logins are rejected right away instead of piling up, and a login still waiting
+ * after waitTimeoutMs is cancelled and rejected the same way : a request thread is never held longer than that.
+ * The queue must stay well below the connector's thread count for the other endpoints to keep threads.
+ */
+public class BulkheadAuthenticationManager implements AuthenticationManager {
+  private final AuthenticationManager delegate;
+
+  private final ThreadPoolExecutor executor;
+
+  private final int retryAfterSeconds;
+
+  private final long waitTimeoutMs;
+
+  private final LongAdder rejectedLogins = new LongAdder();
+
+  private final LongAdder completedLogins = new LongAdder();
+
+  private final LongAdder totalHashNanos = new LongAdder();
+
+  private final LongAccumulator maxHashNanos = new LongAccumulator(Long::max, 0);
+
+  public BulkheadAuthenticationManager(AuthenticationManager delegate, int threads, int queueCapacity, int retryAfterSeconds, long waitTimeoutMs) {
+    this.delegate = delegate;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.waitTimeoutMs = waitTimeoutMs;
+    BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, new LoginThreadFactory());
+  }
+
+  @Override
+  public Authentication authenticate(Authentication authentication) {
+    Future<Authentication> result;
+    try {
+      result = executor.submit(() -> timedAuthenticate(authentication));
+    } catch (RejectedExecutionException e) {
+      rejectedLogins.increment();
+      throw new LoginCapacityExceededException(retryAfterSeconds);
+    }
+
+    try {
+      return result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      // a cancelled login still queued would otherwise hold its slot until a thread picks it up
+      result.cancel(true);
+      executor.remove((Runnable) result);
+      rejectedLogins.increment();
+      throw new LoginCapacityExceededException(retryAfterSeconds);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AuthenticationServiceException(cause.getMessage(), cause);
+    } catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new AuthenticationServiceException("Login interrupted", e);
+    }
+  }
+
+  private Authentication timedAuthenticate(Authentication authentication) {
+    long start = System.nanoTime();
+    try {
+      return delegate.authenticate(authentication);
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      completedLogins.increment();
+      totalHashNanos.add(elapsed);
+      maxHashNanos.accumulate(elapsed);
+    }
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveLogins() {
+    return executor.getActiveCount();
+  }
+
+  public long getRejectedLogins() {
+    return rejectedLogins.sum();
+  }
+
+  public long getCompletedLogins() {
+    return completedLogins.sum();
+  }
+
+  public long getTotalHashNanos() {
+    return totalHashNanos.sum();
+  }
+
+  public long getMaxHashNanos() {
+    return maxHashNanos.get();
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static final class LoginThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "login-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder with a configured cost factor. Stored hashes with a lower cost are reported as needing an upgrade,
+ * so they get rehashed at the next login; stronger ones are kept, the cost never goes down on its own.
+ * {@link #recommendStrength} measures the cost that fits a latency target on this machine, as an advice to the operator only.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+  private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+  private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+  private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+  private final int strength;
+
+  public CalibratedBCryptPasswordEncoder(int strength) {
+    super(strength);
+    this.strength = strength;
+  }
+
+  /**
+   * Raises the cost from {@code minStrength} while one more step still fits in {@code targetMs}.
+   */
+  public static int recommendStrength(long targetMs, int minStrength, int maxStrength) {
+    int strength = minStrength;
+    new BCryptPasswordEncoder(strength).encode(CALIBRATION_PASSWORD);
+    long elapsedMs = timeEncode(strength);
+    while (strength < maxStrength && elapsedMs * 2 <= targetMs) {
+      strength++;
+      elapsedMs = timeEncode(strength);
+    }
+
+    logger.info("BCrypt cost {} fits the target of {} ms on this machine ({} ms per hash)", strength, targetMs, elapsedMs);
+    return strength;
+  }
+
+  /**
+   * Logs a warning when the configured cost differs from the one the calibration recommends, and leaves it as is.
+   */
+  public void adviseStrength(long targetMs, int minStrength, int maxStrength) {
+    int recommended = recommendStrength(targetMs, minStrength, maxStrength);
+    if (recommended != strength) {
+      logger.warn("BCrypt cost is configured to {}, the calibration recommends {}", strength, recommended);
+    }
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    if (encodedPassword == null || encodedPassword.isEmpty()) {
+      return false;
+    }
+    Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+    return matcher.matches() && Integer.parseInt(matcher.group(2)) < strength;
+  }
+
+  private static long timeEncode(int strength) {
+    long start = System.nanoTime();
+    new BCryptPasswordEncoder(strength).encode(CALIBRATION_PASSWORD);
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.LoginThrottledException;
+import com.openclassrooms.starterjwt.util.TokenBucketLimiter;
+
+/**
+ * Limits login attempts per account and per client address before any password gets hashed.
+ */
+@Component
+public class LoginThrottle {
+  private final TokenBucketLimiter emailLimiter;
+
+  private final TokenBucketLimiter ipLimiter;
+
+  private final LongAdder allowedAttempts = new LongAdder();
+
+  private final LongAdder throttledAttempts = new LongAdder();
+
+  public LoginThrottle(@Value("${oc.app.loginEmailBurst}") int emailBurst,
+      @Value("${oc.app.loginEmailRefillMs}") long emailRefillMs,
+      @Value("${oc.app.loginIpBurst}") int ipBurst,
+      @Value("${oc.app.loginIpRefillMs}") long ipRefillMs,
+      @Value("${oc.app.loginThrottleMaxKeys}") int maxKeys) {
+    this.emailLimiter = new TokenBucketLimiter(emailBurst, emailRefillMs, maxKeys);
+    this.ipLimiter = new TokenBucketLimiter(ipBurst, ipRefillMs, maxKeys);
+  }
+
+  /**
+   * Throws a {@link LoginThrottledException} when either the address or the account is out of attempts.
+   */
+  public void acquire(String email, String clientIp) {
+    long waitMs = ipLimiter.tryAcquire(clientIp);
+    if (waitMs == 0 && email != null) {
+      waitMs = emailLimiter.tryAcquire(email.toLowerCase(Locale.ROOT));
+    }
+
+    if (waitMs > 0) {
+      throttledAttempts.increment();
+      throw new LoginThrottledException((int) Math.max(1, (waitMs + 999) / 1000));
+    }
+    allowedAttempts.increment();
+  }
+
+  @Scheduled(fixedDelayString = "${oc.app.loginThrottleSweepMs}")
+  public void sweep() {
+    emailLimiter.sweep();
+    ipLimiter.sweep();
+  }
+
+  public long getAllowedAttempts() {
+    return allowedAttempts.sum();
+  }
+
+  public long getThrottledAttempts() {
+    return throttledAttempts.sum();
+  }
+
+  public int getTrackedKeys() {
+    return emailLimiter.size() + ipLimiter.size();
+  }
+}
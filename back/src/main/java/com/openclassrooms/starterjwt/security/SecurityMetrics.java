@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtTokenCache;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.services.RegisteredEmailFilter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the counters kept by the authentication components on the actuator metrics endpoint.
+ * The authentication manager is looked up lazily : the registry is built while it is still being wired.
+ */
+@Component
+public class SecurityMetrics implements MeterBinder {
+  private final JwtTokenCache jwtTokenCache;
+
+  private final UserDetailsServiceImpl userDetailsService;
+
+  private final ObjectProvider<AuthenticationManager> authenticationManager;
+
+  private final LoginThrottle loginThrottle;
+
+  private final TokenRevocationList tokenRevocationList;
+
+  private final RefreshTokenStore refreshTokenStore;
+
+  private final RegisteredEmailFilter registeredEmailFilter;
+
+  public SecurityMetrics(JwtTokenCache jwtTokenCache,
+      UserDetailsServiceImpl userDetailsService,
+      ObjectProvider<AuthenticationManager> authenticationManager,
+      LoginThrottle loginThrottle,
+      TokenRevocationList tokenRevocationList,
+      RefreshTokenStore refreshTokenStore,
+      RegisteredEmailFilter registeredEmailFilter) {
+    this.jwtTokenCache = jwtTokenCache;
+    this.userDetailsService = userDetailsService;
+    this.authenticationManager = authenticationManager;
+    this.loginThrottle = loginThrottle;
+    this.tokenRevocationList = tokenRevocationList;
+    this.refreshTokenStore = refreshTokenStore;
+    this.registeredEmailFilter = registeredEmailFilter;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("auth.jwt.cache", jwtTokenCache, JwtTokenCache::getHits).tag("result", "hit").register(registry);
+    FunctionCounter.builder("auth.jwt.cache", jwtTokenCache, JwtTokenCache::getMisses).tag("result", "miss").register(registry);
+    FunctionCounter.builder("auth.jwt.cache.evictions", jwtTokenCache, JwtTokenCache::getEvictions).register(registry);
+    Gauge.builder("auth.jwt.cache.size", jwtTokenCache, JwtTokenCache::size).register(registry);
+
+    FunctionCounter.builder("auth.user.cache", userDetailsService, UserDetailsServiceImpl::getCacheHits).tag("result", "hit").register(registry);
+    FunctionCounter.builder("auth.user.cache", userDetailsService, UserDetailsServiceImpl::getCacheMisses).tag("result", "miss").register(registry);
+    Gauge.builder("auth.user.cache.size", userDetailsService, UserDetailsServiceImpl::getCacheSize).register(registry);
+
+    Gauge.builder("auth.login.queue", this, bulkheadValue(BulkheadAuthenticationManager::getQueueDepth)).register(registry);
+    Gauge.builder("auth.login.active", this, bulkheadValue(BulkheadAuthenticationManager::getActiveLogins)).register(registry);
+    FunctionCounter.builder("auth.login.rejected", this, bulkheadValue(BulkheadAuthenticationManager::getRejectedLogins)).register(registry);
+    ToDoubleFunction<SecurityMetrics> completedLogins = bulkheadValue(BulkheadAuthenticationManager::getCompletedLogins);
+    FunctionTimer.builder("auth.login.password.check", this,
+        metrics -> (long) completedLogins.applyAsDouble(metrics),
+        bulkheadValue(BulkheadAuthenticationManager::getTotalHashNanos),
+        TimeUnit.NANOSECONDS).register(registry);
+
+    FunctionCounter.builder("auth.login.throttle", loginThrottle, LoginThrottle::getAllowedAttempts).tag("result", "allowed").register(registry);
+    FunctionCounter.builder("auth.login.throttle", loginThrottle, LoginThrottle::getThrottledAttempts).tag("result", "throttled").register(registry);
+    Gauge.builder("auth.login.throttle.keys", loginThrottle, LoginThrottle::getTrackedKeys).register(registry);
+
+    Gauge.builder("auth.revocation.size", tokenRevocationList, TokenRevocationList::size).register(registry);
+    FunctionCounter.builder("auth.revocation.false.positives", tokenRevocationList, TokenRevocationList::getFalsePositives).register(registry);
+    Gauge.builder("auth.refresh.tokens", refreshTokenStore, RefreshTokenStore::size).register(registry);
+
+    FunctionCounter.builder("auth.email.check", registeredEmailFilter, RegisteredEmailFilter::getDefinitelyFree).tag("result", "definitely.free").register(registry);
+    FunctionCounter.builder("auth.email.check", registeredEmailFilter, RegisteredEmailFilter::getDatabaseChecks).tag("result", "database").register(registry);
+  }
+
+  private ToDoubleFunction<SecurityMetrics> bulkheadValue(ToDoubleFunction<BulkheadAuthenticationManager> value) {
+    return metrics -> {
+      AuthenticationManager manager = metrics.authenticationManager.getIfAvailable();
+      return manager instanceof BulkheadAuthenticationManager ? value.applyAsDouble((BulkheadAuthenticationManager) manager) : 0;
+    };
+  }
+}
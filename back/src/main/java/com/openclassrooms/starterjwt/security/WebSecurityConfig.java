@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,7 +11,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -31,6 +31,30 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Value("${oc.app.loginThreads}")
+  private int loginThreads;
+
+  @Value("${oc.app.loginQueueCapacity}")
+  private int loginQueueCapacity;
+
+  @Value("${oc.app.loginRetryAfterSeconds}")
+  private int loginRetryAfterSeconds;
+
+  @Value("${oc.app.loginWaitTimeoutMs}")
+  private long loginWaitTimeoutMs;
+
+  @Value("${oc.app.bcryptStrength}")
+  private int bcryptStrength;
+
+  @Value("${oc.app.bcryptTargetMs}")
+  private long bcryptTargetMs;
+
+  @Value("${oc.app.bcryptMinStrength}")
+  private int bcryptMinStrength;
+
+  @Value("${oc.app.bcryptMaxStrength}")
+  private int bcryptMaxStrength;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -44,12 +68,14 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Bean
   @Override
   public AuthenticationManager authenticationManagerBean() throws Exception {
-    return super.authenticationManagerBean();
+    return new BulkheadAuthenticationManager(super.authenticationManagerBean(), loginThreads, loginQueueCapacity, loginRetryAfterSeconds, loginWaitTimeoutMs);
   }
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+    CalibratedBCryptPasswordEncoder passwordEncoder = new CalibratedBCryptPasswordEncoder(bcryptStrength);
+    passwordEncoder.adviseStrength(bcryptTargetMs, bcryptMinStrength, bcryptMaxStrength);
+    return passwordEncoder;
   }
 
   @Override
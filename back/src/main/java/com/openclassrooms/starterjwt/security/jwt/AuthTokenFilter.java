@@ -1,6 +1,12 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -10,56 +16,167 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.util.StringUtils;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.jwt.JwtParseResult.Status;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private JwtUtils jwtUtils;
 
+  @Autowired
+  private JwtTokenCache jwtTokenCache;
+
+  @Autowired
+  private TokenRevocationList tokenRevocationList;
+
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${oc.app.jwtStatelessPrincipal}")
+  private boolean statelessPrincipal;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+  private static final RequestMatcher PUBLIC_ROUTES = new AntPathRequestMatcher("/api/auth/**");
+
+  private Timer headerTimer;
+
+  private Timer verifyTimer;
+
+  private Timer principalTimer;
+
+  private Timer contextTimer;
+
+  private final Map<Status, Counter> parseOutcomes = new EnumMap<>(Status.class);
+
+  private Counter cachedOutcome;
+
+  private Counter revokedOutcome;
+
+  private Counter errorOutcome;
+
+  @PostConstruct
+  void initMeters() {
+    headerTimer = stageTimer("header");
+    verifyTimer = stageTimer("verify");
+    principalTimer = stageTimer("principal");
+    contextTimer = stageTimer("context");
+    for (Status status : Status.values()) {
+      parseOutcomes.put(status, outcomeCounter(status.name().toLowerCase(Locale.ROOT)));
+    }
+    cachedOutcome = outcomeCounter("cached");
+    revokedOutcome = outcomeCounter("revoked");
+    errorOutcome = outcomeCounter("error");
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return PUBLIC_ROUTES.matches(request);
+  }
+
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
     try {
-      String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        UsernamePasswordAuthenticationToken authentication =
-            new UsernamePasswordAuthenticationToken(
-                userDetails,
-                null,
-                userDetails.getAuthorities());
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-      }
+      authenticate(request);
     } catch (Exception e) {
-      logger.error("Cannot set user authentication: {}", e);
+      errorOutcome.increment();
+      logger.debug("Cannot set user authentication", e);
     }
 
+    // outside the try : failures further down the chain are not authentication errors and must reach the caller
     filterChain.doFilter(request, response);
   }
 
-  private String parseJwt(HttpServletRequest request) {
-    String headerAuth = request.getHeader("Authorization");
+  private void authenticate(HttpServletRequest request) {
+    long start = System.nanoTime();
+    String jwt = JwtUtils.parseBearerToken(request);
+    long headerParsed = System.nanoTime();
+    headerTimer.record(headerParsed - start, TimeUnit.NANOSECONDS);
+    if (jwt == null) {
+      parseOutcomes.get(Status.MISSING).increment();
+      return;
+    }
+
+    Claims claims = verify(jwt);
+    long verified = System.nanoTime();
+    verifyTimer.record(verified - headerParsed, TimeUnit.NANOSECONDS);
+    if (claims == null) {
+      return;
+    }
 
-    if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
-      return headerAuth.substring(7, headerAuth.length());
+    UserDetails userDetails = statelessPrincipal ? jwtUtils.getUserDetailsFromClaims(claims) : null;
+    if (userDetails == null) {
+      userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
     }
+    long principalLoaded = System.nanoTime();
+    principalTimer.record(principalLoaded - verified, TimeUnit.NANOSECONDS);
+
+    UsernamePasswordAuthenticationToken authentication =
+        new UsernamePasswordAuthenticationToken(
+            userDetails,
+            null,
+            userDetails.getAuthorities());
+    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+    SecurityContextHolder.getContext().setAuthentication(authentication);
+    contextTimer.record(System.nanoTime() - principalLoaded, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the claims of a valid, non revoked token, counting the outcome either way. The token is hashed once for
+   * the cache and the revocation list.
+   */
+  private Claims verify(String jwt) {
+    String digest = TokenDigest.sha256(jwt);
+    Claims claims = jwtTokenCache.getByDigest(digest);
+    if (claims != null) {
+      cachedOutcome.increment();
+    } else {
+      JwtParseResult result = jwtUtils.parse(jwt);
+      parseOutcomes.get(result.getStatus()).increment();
+      if (!result.isValid()) {
+        return null;
+      }
+      claims = result.getClaims();
+      jwtTokenCache.putByDigest(digest, claims);
+    }
+
+    if (tokenRevocationList.isDigestRevoked(digest, claims)) {
+      revokedOutcome.increment();
+      return null;
+    }
+    return claims;
+  }
+
+  private Timer stageTimer(String stage) {
+    return Timer.builder("auth.filter.stage")
+        .description("Time spent in each stage of the JWT authentication")
+        .tag("stage", stage)
+        .register(meterRegistry);
+  }
 
-    return null;
+  private Counter outcomeCounter(String outcome) {
+    return Counter.builder("auth.filter.outcome")
+        .description("Requests seen by the JWT filter, by token outcome")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
   }
 }
@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Outcome of {@link JwtUtils#parse(String)}: the verified claims, or the reason why the token was rejected.
+ */
+public final class JwtParseResult {
+  public enum Status {
+    VALID,
+    MISSING,
+    MALFORMED,
+    UNSUPPORTED,
+    BAD_SIGNATURE,
+    EXPIRED,
+    PREMATURE
+  }
+
+  private static final Map<Status, JwtParseResult> REJECTIONS = new EnumMap<>(Status.class);
+
+  static {
+    for (Status status : Status.values()) {
+      if (status != Status.VALID) {
+        REJECTIONS.put(status, new JwtParseResult(status, null));
+      }
+    }
+  }
+
+  private final Status status;
+
+  private final Claims claims;
+
+  private JwtParseResult(Status status, Claims claims) {
+    this.status = status;
+    this.claims = claims;
+  }
+
+  public static JwtParseResult valid(Claims claims) {
+    return new JwtParseResult(Status.VALID, claims);
+  }
+
+  public static JwtParseResult rejected(Status status) {
+    if (status == Status.VALID) {
+      throw new IllegalArgumentException("A rejection needs a rejection status");
+    }
+    return REJECTIONS.get(status);
+  }
+
+  public boolean isValid() {
+    return status == Status.VALID;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public Claims getClaims() {
+    return claims;
+  }
+}
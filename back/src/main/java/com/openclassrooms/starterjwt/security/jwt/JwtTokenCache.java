@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.util.BoundedCache;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Claims of tokens whose signature has already been verified, kept until the token's own expiration.
+ */
+@Component
+public class JwtTokenCache {
+  private final BoundedCache<String, Claims> cache;
+
+  public JwtTokenCache(@Value("${oc.app.jwtCacheSize}") int maxSize) {
+    this.cache = new BoundedCache<>(maxSize);
+  }
+
+  public Claims get(String token) {
+    return getByDigest(TokenDigest.sha256(token));
+  }
+
+  /**
+   * Same as get, for a caller that already holds the {@link TokenDigest} of the token and also needs it to put the claims.
+   */
+  public Claims getByDigest(String tokenDigest) {
+    return cache.get(tokenDigest);
+  }
+
+  public void put(String token, Claims claims) {
+    putByDigest(TokenDigest.sha256(token), claims);
+  }
+
+  public void putByDigest(String tokenDigest, Claims claims) {
+    Date expiration = claims != null ? claims.getExpiration() : null;
+    if (expiration == null) {
+      return;
+    }
+    cache.put(tokenDigest, claims, expiration.getTime());
+  }
+
+  public void evict(String token) {
+    cache.remove(TokenDigest.sha256(token));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+}
@@ -1,59 +1,236 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.security.jwt.JwtParseResult.Status;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.DefaultClaims;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+
+  private static final String HS512_HEADER = "eyJhbGciOiJIUzUxMiJ9";
+
+  private static final int MAX_TOKEN_LENGTH = 8192;
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  private SecretKeySpec signingKey;
+
+  private ThreadLocal<Mac> hmac;
+
+  /**
+   * Derives the signing key once; every thread then keeps its own initialised HMAC engine.
+   */
+  @PostConstruct
+  void initSigningKey() {
+    signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SignatureAlgorithm.HS512.getJcaName());
+    hmac = ThreadLocal.withInitial(this::newMac);
+  }
+
   public String generateJwtToken(Authentication authentication) {
 
     UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
-    return Jwts.builder()
-        .setSubject((userPrincipal.getUsername()))
-        .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
-        .compact();
+    long now = System.currentTimeMillis();
+    Map<String, Object> claims = new LinkedHashMap<>();
+    claims.put(Claims.SUBJECT, userPrincipal.getUsername());
+    putIfNotNull(claims, CLAIM_ID, userPrincipal.getId());
+    putIfNotNull(claims, CLAIM_FIRST_NAME, userPrincipal.getFirstName());
+    putIfNotNull(claims, CLAIM_LAST_NAME, userPrincipal.getLastName());
+    putIfNotNull(claims, CLAIM_ADMIN, userPrincipal.getAdmin());
+    claims.put(Claims.ISSUED_AT, now / 1000);
+    claims.put(Claims.EXPIRATION, (now + jwtExpirationMs) / 1000);
+
+    String content;
+    try {
+      content = HS512_HEADER + "." + BASE64_URL.encodeToString(objectMapper.writeValueAsBytes(claims));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Unable to serialize the JWT claims", e);
+    }
+    return content + "." + BASE64_URL.encodeToString(sign(content));
+  }
+
+  public Claims getClaimsFromJwtToken(String token) {
+    return parse(token).getClaims();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    Claims claims = getClaimsFromJwtToken(token);
+    return claims != null ? claims.getSubject() : null;
+  }
+
+  /**
+   * Rebuilds the principal from the claims embedded at login, or returns null for tokens issued without them.
+   */
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Long id = claims.get(CLAIM_ID, Long.class);
+    if (id == null || claims.getSubject() == null) {
+      return null;
+    }
+
+    return UserDetailsImpl
+            .builder()
+            .id(id)
+            .username(claims.getSubject())
+            .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+            .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+            .admin(Boolean.TRUE.equals(claims.get(CLAIM_ADMIN, Boolean.class)))
+            .build();
+  }
+
+  /**
+   * Returns the token of the request's "Authorization: Bearer" header, or null if there is none.
+   */
+  public static String parseBearerToken(HttpServletRequest request) {
+    String headerAuth = request.getHeader("Authorization");
+
+    if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
+      return headerAuth.substring(7);
+    }
+
+    return null;
   }
 
   public boolean validateJwtToken(String authToken) {
+    return parse(authToken).isValid();
+  }
+
+  /**
+   * Verifies the token and reads its claims in a single pass. Rejected tokens are reported through
+   * the result status instead of exceptions, and structurally invalid tokens are rejected before any crypto.
+   * Like jjwt, a token is refused before its "nbf" date as well as after its "exp" date.
+   */
+  public JwtParseResult parse(String token) {
+    if (token == null || token.isEmpty()) {
+      return JwtParseResult.rejected(Status.MISSING);
+    }
+
+    int headerEnd = token.indexOf('.');
+    int payloadEnd = headerEnd > 0 ? token.indexOf('.', headerEnd + 1) : -1;
+    if (payloadEnd < 0 || !hasJwtShape(token, headerEnd, payloadEnd)) {
+      return JwtParseResult.rejected(Status.MALFORMED);
+    }
+    if (payloadEnd == token.length() - 1) {
+      return JwtParseResult.rejected(Status.UNSUPPORTED);
+    }
+
+    if (!token.startsWith(HS512_HEADER + ".")) {
+      Map<?, ?> header = readJson(token, 0, headerEnd);
+      if (header == null) {
+        return JwtParseResult.rejected(Status.MALFORMED);
+      }
+      if (!SignatureAlgorithm.HS512.getValue().equals(header.get("alg"))) {
+        return JwtParseResult.rejected(Status.UNSUPPORTED);
+      }
+    }
+
+    byte[] signature = Base64.getUrlDecoder().decode(token.substring(payloadEnd + 1));
+    if (!MessageDigest.isEqual(sign(token.substring(0, payloadEnd)), signature)) {
+      return JwtParseResult.rejected(Status.BAD_SIGNATURE);
+    }
+
+    Map<?, ?> payload = readJson(token, headerEnd + 1, payloadEnd);
+    if (payload == null) {
+      return JwtParseResult.rejected(Status.MALFORMED);
+    }
+
+    @SuppressWarnings("unchecked")
+    Claims claims = new DefaultClaims((Map<String, Object>) payload);
+    Date expiration = claims.getExpiration();
+    if (expiration != null && expiration.getTime() <= System.currentTimeMillis()) {
+      return JwtParseResult.rejected(Status.EXPIRED);
+    }
+    Date notBefore = claims.getNotBefore();
+    if (notBefore != null && notBefore.getTime() > System.currentTimeMillis()) {
+      return JwtParseResult.rejected(Status.PREMATURE);
+    }
+
+    return JwtParseResult.valid(claims);
+  }
+
+  private byte[] sign(String content) {
+    return hmac.get().doFinal(content.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private Mac newMac() {
+    try {
+      Mac mac = Mac.getInstance(SignatureAlgorithm.HS512.getJcaName());
+      mac.init(signingKey);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to initialise the JWT signature", e);
+    }
+  }
+
+  private static void putIfNotNull(Map<String, Object> claims, String name, Object value) {
+    if (value != null) {
+      claims.put(name, value);
+    }
+  }
+
+  private static boolean hasJwtShape(String token, int headerEnd, int payloadEnd) {
+    if (token.length() > MAX_TOKEN_LENGTH || payloadEnd == headerEnd + 1
+        || !token.startsWith("eyJ") || token.indexOf('.', payloadEnd + 1) >= 0) {
+      return false;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      char c = token.charAt(i);
+      boolean base64Url = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+      if (!base64Url && c != '.') {
+        return false;
+      }
+    }
+    return headerEnd % 4 != 1
+        && (payloadEnd - headerEnd - 1) % 4 != 1
+        && (token.length() - payloadEnd - 1) % 4 != 1;
+  }
+
+  private static Map<?, ?> readJson(String token, int start, int end) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
-    } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
-    } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
-    } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
-    } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
-    } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
-    }
-
-    return false;
+      byte[] json = Base64.getUrlDecoder().decode(token.substring(start, end));
+      return objectMapper.readValue(json, Map.class);
+    } catch (IOException | IllegalArgumentException e) {
+      logger.debug("Invalid JWT segment: {}", e.getMessage());
+      return null;
+    }
   }
 }
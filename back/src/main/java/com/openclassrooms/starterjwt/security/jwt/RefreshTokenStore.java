@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.util.BoundedCache;
+
+/**
+ * Opaque, single-use refresh tokens. Only their SHA-256 digest is kept, next to a password-less snapshot
+ * of the principal, so renewing an access token needs no BCrypt. The snapshot only tells who the token was
+ * issued to : the user is reloaded before new tokens are issued.
+ */
+@Component
+public class RefreshTokenStore {
+  private static final int TOKEN_BYTES = 32;
+
+  private final SecureRandom random = new SecureRandom();
+
+  private final BoundedCache<String, UserDetailsImpl> tokens;
+
+  private final long refreshExpirationMs;
+
+  public RefreshTokenStore(@Value("${oc.app.jwtRefreshExpirationMs}") long refreshExpirationMs,
+      @Value("${oc.app.jwtRefreshStoreSize}") int maxSize) {
+    this.refreshExpirationMs = refreshExpirationMs;
+    this.tokens = new BoundedCache<>(maxSize);
+  }
+
+  public String issue(UserDetailsImpl userDetails) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    random.nextBytes(bytes);
+    String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+    UserDetailsImpl snapshot = UserDetailsImpl
+            .builder()
+            .id(userDetails.getId())
+            .username(userDetails.getUsername())
+            .firstName(userDetails.getFirstName())
+            .lastName(userDetails.getLastName())
+            .admin(userDetails.getAdmin())
+            .build();
+    tokens.put(TokenDigest.sha256(refreshToken), snapshot, System.currentTimeMillis() + refreshExpirationMs);
+    return refreshToken;
+  }
+
+  /**
+   * Redeems a refresh token: it is removed atomically, so a token can only ever be exchanged once.
+   * @return the principal it was issued for, or null if unknown, already used or expired.
+   */
+  public UserDetailsImpl consume(String refreshToken) {
+    if (refreshToken == null || refreshToken.isEmpty()) {
+      return null;
+    }
+    return tokens.remove(TokenDigest.sha256(refreshToken));
+  }
+
+  public void revokeUser(Long userId) {
+    tokens.removeIf(userDetails -> Objects.equals(userDetails.getId(), userId));
+  }
+
+  public int size() {
+    return tokens.size();
+  }
+}
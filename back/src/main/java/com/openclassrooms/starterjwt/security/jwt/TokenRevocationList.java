@@ -0,0 +1,180 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.util.BloomFilter;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Access tokens that must be refused before their expiration: logged out tokens, and every token of a deleted user.
+ * A Bloom filter answers the common "never revoked" case, the exact map confirms its positives, and a timing wheel
+ * drops each entry once the tokens it covers would have expired anyway, so memory only depends on recent revocations.
+ */
+@Component
+public class TokenRevocationList {
+  private static final String TOKEN_PREFIX = "t:";
+
+  private static final String USER_PREFIX = "u:";
+
+  private static final double BLOOM_FALSE_POSITIVE_RATE = 0.001;
+
+  private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+  private final List<List<String>> wheel;
+
+  private final long tickMs;
+
+  private final long jwtExpirationMs;
+
+  private final int bloomSize;
+
+  private volatile BloomFilter bloom;
+
+  private long cursorTick;
+
+  private final LongAdder falsePositives = new LongAdder();
+
+  public TokenRevocationList(@Value("${oc.app.jwtExpirationMs}") long jwtExpirationMs,
+      @Value("${oc.app.revocationTickMs}") long tickMs,
+      @Value("${oc.app.revocationBloomSize}") int bloomSize) {
+    this.jwtExpirationMs = jwtExpirationMs;
+    this.tickMs = tickMs;
+    this.bloomSize = bloomSize;
+    this.bloom = new BloomFilter(bloomSize, BLOOM_FALSE_POSITIVE_RATE);
+
+    int slots = (int) (jwtExpirationMs / tickMs) + 2;
+    this.wheel = new ArrayList<>(slots);
+    for (int i = 0; i < slots; i++) {
+      this.wheel.add(new ArrayList<>());
+    }
+    this.cursorTick = System.currentTimeMillis() / tickMs;
+  }
+
+  public void revokeToken(String token, long expiresAt) {
+    revoke(TOKEN_PREFIX + TokenDigest.sha256(token), expiresAt);
+  }
+
+  /**
+   * Refuses every token issued to this user up to now, until the longest of them has expired. Tokens issued later are
+   * still accepted : the entry keeps the revocation time as its expiration minus the access token lifetime.
+   */
+  public void revokeUser(Long userId) {
+    revoke(USER_PREFIX + userId, System.currentTimeMillis() + jwtExpirationMs);
+  }
+
+  public boolean isRevoked(String token, Claims claims) {
+    return isDigestRevoked(TokenDigest.sha256(token), claims);
+  }
+
+  /**
+   * Same as isRevoked, for a caller that already holds the {@link TokenDigest} of the token.
+   */
+  public boolean isDigestRevoked(String tokenDigest, Claims claims) {
+    if (revoked.isEmpty()) {
+      return false;
+    }
+
+    BloomFilter filter = bloom;
+    Object userId = claims.get(JwtUtils.CLAIM_ID);
+    if (userId != null) {
+      Long expiresAt = lookup(filter, USER_PREFIX + userId);
+      if (expiresAt != null && issuedBefore(claims, expiresAt - jwtExpirationMs)) {
+        return true;
+      }
+    }
+    return lookup(filter, TOKEN_PREFIX + tokenDigest) != null;
+  }
+
+  /**
+   * Moves the wheel up to now, forgetting the entries whose tokens have all expired.
+   */
+  @Scheduled(fixedRateString = "${oc.app.revocationTickMs}")
+  public synchronized void advance() {
+    long now = System.currentTimeMillis();
+    long nowTick = now / tickMs;
+    long lastTick = Math.min(nowTick - 1, cursorTick + wheel.size() - 1);
+    int removed = 0;
+
+    for (long tick = cursorTick; tick <= lastTick; tick++) {
+      List<String> slot = wheel.get((int) (tick % wheel.size()));
+      List<String> keys = new ArrayList<>(slot);
+      slot.clear();
+      for (String key : keys) {
+        Long expiresAt = revoked.get(key);
+        if (expiresAt == null) {
+          continue;
+        }
+        if (expiresAt <= now) {
+          revoked.remove(key);
+          removed++;
+        } else {
+          schedule(key, expiresAt, nowTick);
+        }
+      }
+    }
+    cursorTick = Math.max(cursorTick, nowTick);
+
+    if (removed > 0) {
+      BloomFilter rebuilt = new BloomFilter(bloomSize, BLOOM_FALSE_POSITIVE_RATE);
+      revoked.keySet().forEach(rebuilt::add);
+      bloom = rebuilt;
+    }
+  }
+
+  public int size() {
+    return revoked.size();
+  }
+
+  public long getFalsePositives() {
+    return falsePositives.sum();
+  }
+
+  private synchronized void revoke(String key, long expiresAt) {
+    if (expiresAt <= System.currentTimeMillis()) {
+      return;
+    }
+    Long previous = revoked.get(key);
+    if (previous != null && previous >= expiresAt) {
+      return;
+    }
+    revoked.put(key, expiresAt);
+    bloom.add(key);
+    schedule(key, expiresAt, cursorTick);
+  }
+
+  private void schedule(String key, long expiresAt, long fromTick) {
+    long tick = Math.max(expiresAt / tickMs, fromTick);
+    tick = Math.min(tick, fromTick + wheel.size() - 1);
+    wheel.get((int) (tick % wheel.size())).add(key);
+  }
+
+  /**
+   * Returns the expiration of the entry, or null if the key was never revoked or has been forgotten.
+   */
+  private Long lookup(BloomFilter filter, String key) {
+    if (!filter.mightContain(key)) {
+      return null;
+    }
+    Long expiresAt = revoked.get(key);
+    if (expiresAt == null) {
+      falsePositives.increment();
+    }
+    return expiresAt;
+  }
+
+  // iat only has a precision of one second : a token issued in the second of the revocation is refused too
+  private static boolean issuedBefore(Claims claims, long revokedAt) {
+    Date issuedAt = claims.getIssuedAt();
+    return issuedAt == null || issuedAt.getTime() <= revokedAt;
+  }
+}
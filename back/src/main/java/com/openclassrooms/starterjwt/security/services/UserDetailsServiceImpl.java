@@ -1,36 +1,129 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import java.util.Locale;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.util.BoundedCache;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  private final BoundedCache<String, UserDetailsImpl> userCache;
+
+  private final long userCacheTtlMs;
+
+  // bumped by every eviction : a lookup that read the database before an eviction must not cache what it read
+  private final Object evictionLock = new Object();
+  private long evictionGeneration;
+
+  UserDetailsServiceImpl(UserRepository userRepository,
+      @Value("${oc.app.userCacheSize}") int userCacheSize,
+      @Value("${oc.app.userCacheTtlMs}") long userCacheTtlMs) {
     this.userRepository = userRepository;
+    this.userCache = new BoundedCache<>(userCacheSize);
+    this.userCacheTtlMs = userCacheTtlMs;
   }
 
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    String key = cacheKey(username);
+    UserDetailsImpl cachedUserDetails = userCache.get(key);
+    if (cachedUserDetails != null) {
+      return cachedUserDetails;
+    }
+
+    long generation;
+    synchronized (evictionLock) {
+      generation = evictionGeneration;
+    }
+
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
-    return UserDetailsImpl
+    UserDetailsImpl userDetails = UserDetailsImpl
             .builder()
             .id(user.getId())
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
+
+    synchronized (evictionLock) {
+      if (generation == evictionGeneration) {
+        userCache.put(key, userDetails, System.currentTimeMillis() + userCacheTtlMs);
+      }
+    }
+    return userDetails;
+  }
+
+  /**
+   * Called by the authentication provider after a successful login when the stored hash needs to be redone.
+   */
+  @Override
+  public UserDetails updatePassword(UserDetails user, String newPassword) {
+    userRepository.updatePassword(user.getUsername(), newPassword);
+    evict(user.getUsername());
+
+    UserDetailsImpl userDetails = (UserDetailsImpl) user;
+    return UserDetailsImpl
+            .builder()
+            .id(userDetails.getId())
+            .username(userDetails.getUsername())
+            .lastName(userDetails.getLastName())
+            .firstName(userDetails.getFirstName())
+            .admin(userDetails.getAdmin())
+            .password(newPassword)
+            .build();
+  }
+
+  /**
+   * Drops the cached principal of this email, to be called whenever the stored user changes.
+   */
+  public void evict(String username) {
+    synchronized (evictionLock) {
+      evictionGeneration++;
+      userCache.remove(cacheKey(username));
+    }
+  }
+
+  public void evictById(Long id) {
+    synchronized (evictionLock) {
+      evictionGeneration++;
+      userCache.removeIf(userDetails -> Objects.equals(userDetails.getId(), id));
+    }
+  }
+
+  public int getCacheSize() {
+    return userCache.size();
   }
 
+  public long getCacheHits() {
+    return userCache.getHits();
+  }
+
+  public long getCacheMisses() {
+    return userCache.getMisses();
+  }
+
+  public double getCacheHitRatio() {
+    long hits = userCache.getHits();
+    long lookups = hits + userCache.getMisses();
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  private static String cacheKey(String username) {
+    return username.toLowerCase(Locale.ROOT);
+  }
 }
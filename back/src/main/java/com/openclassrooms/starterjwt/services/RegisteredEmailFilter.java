@@ -0,0 +1,123 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.util.CountingBloomFilter;
+
+/**
+ * In-memory filter of the registered emails, so that most availability checks never reach the database.
+ * A "free" answer is only trusted once the filter has been loaded; the unique index on USERS.email stays
+ * the final guard for emails registered by another instance in the meantime.
+ */
+@Service
+public class RegisteredEmailFilter {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final UserRepository userRepository;
+    private final int expectedUsers;
+
+    private volatile CountingBloomFilter filter;
+
+    // guards the swap of the filter and the emails added while a rebuild scans the table
+    private final Object swapLock = new Object();
+    private List<String> addedDuringRebuild;
+
+    private final LongAdder definitelyFree = new LongAdder();
+    private final LongAdder databaseChecks = new LongAdder();
+
+    public RegisteredEmailFilter(UserRepository userRepository,
+                                 @Value("${oc.app.emailFilterExpectedUsers}") int expectedUsers) {
+        this.userRepository = userRepository;
+        this.expectedUsers = expectedUsers;
+    }
+
+    /**
+     * Loads every email at startup, then again periodically to forget removals the filter could not see.
+     * The emails added while the table is scanned may be missed by the scan, so they are replayed into the new
+     * filter before it is swapped in. Removals during the scan are not replayed : the scan decides, at worst
+     * leaving a false positive until the next rebuild.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${oc.app.emailFilterRebuildMs}", fixedDelayString = "${oc.app.emailFilterRebuildMs}")
+    public void rebuild() {
+        synchronized (swapLock) {
+            addedDuringRebuild = new ArrayList<>();
+        }
+        CountingBloomFilter rebuilt = new CountingBloomFilter(expectedUsers, FALSE_POSITIVE_RATE);
+        try {
+            userRepository.forEachEmail(email -> rebuilt.add(key(email)));
+        } finally {
+            synchronized (swapLock) {
+                List<String> added = addedDuringRebuild;
+                addedDuringRebuild = null;
+                added.forEach(rebuilt::add);
+                this.filter = rebuilt;
+            }
+        }
+    }
+
+    public boolean isTaken(String email) {
+        CountingBloomFilter current = this.filter;
+        if (current != null && !current.mightContain(key(email))) {
+            definitelyFree.increment();
+            return false;
+        }
+        databaseChecks.increment();
+        return userRepository.existsByEmail(email);
+    }
+
+    public boolean mightBeTaken(String email) {
+        CountingBloomFilter current = this.filter;
+        return current == null || current.mightContain(key(email));
+    }
+
+    public void add(String email) {
+        synchronized (swapLock) {
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(key(email));
+            }
+            CountingBloomFilter current = this.filter;
+            if (current != null) {
+                current.add(key(email));
+            }
+        }
+    }
+
+    public void remove(String email) {
+        synchronized (swapLock) {
+            // a rebuild in progress may or may not have seen this email : removing it could break another email's count
+            CountingBloomFilter current = this.filter;
+            if (current != null && addedDuringRebuild == null) {
+                current.remove(key(email));
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        remove(event.getEmail());
+    }
+
+    public long getDefinitelyFree() {
+        return definitelyFree.sum();
+    }
+
+    public long getDatabaseChecks() {
+        return databaseChecks.sum();
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when seats of a session may have been freed, for the waitlist to be served.
+ */
+@Getter
+@AllArgsConstructor
+public class SeatReleasedEvent {
+    private final Long sessionId;
+}
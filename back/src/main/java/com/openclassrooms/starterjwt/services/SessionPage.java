@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.List;
+
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SessionPage {
+    private final List<SessionSummaryDto> sessions;
+
+    /**
+     * Cursor of the following page, null on the last one.
+     */
+    private final String nextCursor;
+}
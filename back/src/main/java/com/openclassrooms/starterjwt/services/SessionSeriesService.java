@@ -0,0 +1,150 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
+import com.openclassrooms.starterjwt.payload.request.SessionSeriesRequest;
+import com.openclassrooms.starterjwt.payload.response.SeriesParticipationResponse;
+import com.openclassrooms.starterjwt.payload.response.SessionSeriesResponse;
+import com.openclassrooms.starterjwt.repository.SeriesSeat;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the occurrences of a recurring session server-side and writes them at once : one teacher check,
+ * one series row and one batch of session rows, whatever the number of occurrences.
+ */
+@Service
+public class SessionSeriesService {
+    /**
+     * A year of daily classes.
+     */
+    static final int MAX_OCCURRENCES = 366;
+
+    private final SessionRepository sessionRepository;
+
+    private final TeacherRepository teacherRepository;
+
+    private final UserRepository userRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SessionSeriesService(SessionRepository sessionRepository,
+                                TeacherRepository teacherRepository,
+                                UserRepository userRepository,
+                                ApplicationEventPublisher eventPublisher) {
+        this.sessionRepository = sessionRepository;
+        this.teacherRepository = teacherRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Transactional
+    public SessionSeriesResponse create(SessionSeriesRequest request) {
+        List<Date> dates = occurrences(request);
+        if (!this.teacherRepository.existsById(request.getTeacher_id())) {
+            throw new NotFoundException();
+        }
+
+        Long seriesId = this.sessionRepository.insertSeries(request, dates);
+        return new SessionSeriesResponse(seriesId, dates.size(), dates);
+    }
+
+    /**
+     * Books the user on every upcoming session of the series, or on none : a single full session refuses the whole
+     * booking with a SessionFullException. Sessions he is already booked on are skipped.
+     */
+    @Transactional
+    public SeriesParticipationResponse participate(Long seriesId, Long userId) {
+        if (!this.userRepository.existsById(userId)) {
+            throw new NotFoundException();
+        }
+        List<SeriesSeat> seats = lockSeats(seriesId, userId);
+
+        List<Long> sessionIds = seats.stream().filter(seat -> !seat.isBooked()).map(SeriesSeat::getSessionId).collect(Collectors.toList());
+        if (seats.stream().anyMatch(seat -> !seat.isBooked() && seat.isFull())) {
+            throw new SessionFullException();
+        }
+
+        this.sessionRepository.addParticipations(userId, sessionIds);
+        return new SeriesParticipationResponse(seriesId, sessionIds.size(), seats.size() - sessionIds.size());
+    }
+
+    /**
+     * Cancels the user's bookings on the upcoming sessions of the series, and hands the freed seats to their waitlists.
+     * BadRequestException if he isn't booked on any of them.
+     */
+    @Transactional
+    public SeriesParticipationResponse noLongerParticipate(Long seriesId, Long userId) {
+        List<SeriesSeat> seats = lockSeats(seriesId, userId);
+
+        List<Long> sessionIds = seats.stream().filter(SeriesSeat::isBooked).map(SeriesSeat::getSessionId).collect(Collectors.toList());
+        if (sessionIds.isEmpty()) {
+            throw new BadRequestException();
+        }
+
+        this.sessionRepository.removeParticipations(userId, sessionIds);
+        sessionIds.forEach(sessionId -> this.eventPublisher.publishEvent(new SeatReleasedEvent(sessionId)));
+        return new SeriesParticipationResponse(seriesId, sessionIds.size(), seats.size() - sessionIds.size());
+    }
+
+    // an unknown series and one that is over look the same : nothing left to book
+    private List<SeriesSeat> lockSeats(Long seriesId, Long userId) {
+        List<SeriesSeat> seats = this.sessionRepository.lockSeriesSeats(seriesId, userId);
+        if (seats.isEmpty()) {
+            throw new NotFoundException();
+        }
+        return seats;
+    }
+
+    /**
+     * Each occurrence is computed from the start rather than from the previous one, so monthly series started on the 31st
+     * fall on the last day of shorter months without drifting to the 28th afterwards. Local time of day is kept across DST changes.
+     */
+    static List<Date> occurrences(SessionSeriesRequest request) {
+        if ((request.getOccurrences() == null) == (request.getUntil() == null)) {
+            throw new BadRequestException();
+        }
+        if (request.getOccurrences() != null && request.getOccurrences() > MAX_OCCURRENCES) {
+            throw new BadRequestException();
+        }
+
+        ZonedDateTime start = request.getStart().toInstant().atZone(ZoneId.systemDefault());
+        int count = request.getOccurrences() != null ? request.getOccurrences() : MAX_OCCURRENCES + 1;
+        List<Date> dates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Date date = Date.from(next(start, request.getFrequency(), (long) i * request.getInterval()).toInstant());
+            if (request.getUntil() != null && date.after(request.getUntil())) {
+                break;
+            }
+            dates.add(date);
+        }
+
+        if (dates.isEmpty() || dates.size() > MAX_OCCURRENCES) {
+            throw new BadRequestException();
+        }
+        return dates;
+    }
+
+    private static ZonedDateTime next(ZonedDateTime start, SessionSeriesRequest.Frequency frequency, long steps) {
+        switch (frequency) {
+            case DAILY:
+                return start.plusDays(steps);
+            case WEEKLY:
+                return start.plusWeeks(steps);
+            default:
+                return start.plusMonths(steps);
+        }
+    }
+}
@@ -1,28 +1,47 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationResponse;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationRow;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationRow.Status;
+import com.openclassrooms.starterjwt.repository.SessionCursor;
+import com.openclassrooms.starterjwt.repository.SessionFilter;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class SessionService {
+    static final int MAX_PAGE_SIZE = 100;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SessionService(SessionRepository sessionRepository, UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     public Session create(Session session) {
+        countSeats(session);
         return this.sessionRepository.save(session);
     }
 
@@ -34,45 +53,141 @@ public class SessionService {
         return this.sessionRepository.findAll();
     }
 
+    /**
+     * Returns the page of the session summaries matching the filter that follows the cursor, ordered by date then id. Asks the repository for one extra
+     * row to know whether a next page exists, and rejects cursors it did not issue with a BadRequestException.
+     * userId is the user whose bookings are flagged, null for none.
+     */
+    public SessionPage findPage(String cursor, SessionFilter filter, Sort.Direction direction, int size, Long userId) {
+        SessionCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                after = SessionCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException();
+            }
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<SessionSummaryDto> sessions = this.sessionRepository.findSummaryPage(filter, after, direction, userId, pageSize + 1);
+        if (sessions.size() <= pageSize) {
+            return new SessionPage(sessions, null);
+        }
+
+        List<SessionSummaryDto> page = sessions.subList(0, pageSize);
+        return new SessionPage(page, SessionCursor.of(page.get(pageSize - 1)).encode());
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * A session sent without capacity keeps the stored one : clients that don't know about capacities must not make
+     * a limited session unlimited by saving it.
+     */
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        if (session.getCapacity() == null) {
+            this.sessionRepository.findById(id).ifPresent(storedSession -> session.setCapacity(storedSession.getCapacity()));
+        }
+        countSeats(session);
+        Session updatedSession = this.sessionRepository.save(session);
+        // the capacity may have grown, or participants been removed
+        this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+        return updatedSession;
     }
 
+    /**
+     * Takes a seat then inserts the participation, in one short transaction : the session row stays locked for two
+     * single-row statements only. Any failure after the seat was taken rolls it back with the exception.
+     */
+    @Transactional
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+        if (this.sessionRepository.reserveSeat(id) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
+            throw new SessionFullException();
+        }
+
+        if (this.sessionRepository.addParticipant(id, userId) == 1) {
+            return;
+        }
+
+        // nothing inserted : the user is missing or already booked
+        if (!this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
+        throw new BadRequestException();
+    }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
-            throw new BadRequestException();
+    /**
+     * Books a whole list of users in one transaction, and reports each of them in the order received. The session is
+     * locked first, the users are checked with one query, and the new rows are inserted in one batch. Users beyond the free
+     * seats are refused in list order, as they would have been one by one.
+     */
+    @Transactional
+    public BulkParticipationResponse participateAll(Long id, List<Long> userIds) {
+        Integer freeSeats = this.sessionRepository.lockFreeSeats(id);
+        if (freeSeats == null) {
+            throw new NotFoundException();
         }
 
-        session.getUsers().add(user);
+        Set<Long> distinctUserIds = new LinkedHashSet<>(userIds);
+        Map<Long, Boolean> bookingStates = this.sessionRepository.findBookingStates(id, distinctUserIds);
+
+        BulkParticipationResponse response = new BulkParticipationResponse();
+        List<Long> enrolledUserIds = new ArrayList<>();
+        Set<Long> seenUserIds = new HashSet<>();
+        for (Long userId : userIds) {
+            Status status;
+            if (!seenUserIds.add(userId)) {
+                status = Status.DUPLICATE;
+            } else if (!bookingStates.containsKey(userId)) {
+                status = Status.USER_NOT_FOUND;
+            } else if (bookingStates.get(userId)) {
+                status = Status.ALREADY_BOOKED;
+            } else if (enrolledUserIds.size() >= freeSeats) {
+                status = Status.SESSION_FULL;
+            } else {
+                enrolledUserIds.add(userId);
+                status = Status.ENROLLED;
+            }
+            response.add(new BulkParticipationRow(userId, status));
+        }
 
-        this.sessionRepository.save(session);
+        this.sessionRepository.addParticipants(id, enrolledUserIds);
+        return response;
     }
 
+    /**
+     * Frees the seat and hands it to the waitlist. The promotion itself runs later in WaitlistPromoter,
+     * once this transaction is committed, so the cancellation never waits for it.
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        // seat first, for the same lock order as participate
+        if (this.sessionRepository.releaseSeat(id) == 1 && this.sessionRepository.removeParticipant(id, userId) == 1) {
+            this.eventPublisher.publishEvent(new SeatReleasedEvent(id));
+            return;
+        }
+
+        if (!this.sessionRepository.existsById(id)) {
             throw new NotFoundException();
         }
+        throw new BadRequestException();
+    }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+    /**
+     * Sessions created or updated as a whole carry their participant list : the counter is set from it
+     * (here as well as in the entity callback, which doesn't run if no column changed).
+     */
+    private static void countSeats(Session session) {
+        int seatsTaken = session.getUsers() != null ? session.getUsers().size() : 0;
+        if (session.getCapacity() != null && seatsTaken > session.getCapacity()) {
             throw new BadRequestException();
         }
-
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
-
-        this.sessionRepository.save(session);
+        session.setSeatsTaken(seatsTaken);
     }
 }
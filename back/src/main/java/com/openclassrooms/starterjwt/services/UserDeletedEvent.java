@@ -0,0 +1,14 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a user is deleted, for the in-memory state about this user to follow once the deletion is committed.
+ */
+@Getter
+@AllArgsConstructor
+public class UserDeletedEvent {
+    private final Long userId;
+    private final String email;
+}
@@ -0,0 +1,332 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.response.BulkRegistrationResponse;
+import com.openclassrooms.starterjwt.payload.response.BulkRegistrationRow;
+import com.openclassrooms.starterjwt.payload.response.BulkRegistrationRow.Status;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Registers many users from a streamed JSON array or CSV file. Rows are handled in chunks: one query finds the
+ * emails already taken (only among those the registered email filter cannot rule out), passwords are hashed
+ * in parallel, and the new users are inserted with a JDBC batch.
+ * The hashing runs on a pool of its own, so an import never takes the common ForkJoin pool the rest of the application
+ * shares. Once its threads and its queue are busy, the importing thread hashes the next password itself.
+ */
+@Service
+public class UserImportService {
+    private static final String[] CSV_COLUMNS = {"email", "firstName", "lastName", "password"};
+
+    private final UserRepository userRepository;
+    private final RegisteredEmailFilter registeredEmailFilter;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final ThreadPoolExecutor hashExecutor;
+
+    public UserImportService(UserRepository userRepository,
+                             RegisteredEmailFilter registeredEmailFilter,
+                             PasswordEncoder passwordEncoder,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             @Value("${oc.app.bulkRegistrationChunkSize}") int chunkSize,
+                             @Value("${oc.app.bulkRegistrationHashThreads}") int hashThreads) {
+        this.userRepository = userRepository;
+        this.registeredEmailFilter = registeredEmailFilter;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.hashExecutor = new ThreadPoolExecutor(hashThreads, hashThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, chunkSize)), new HashThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    /**
+     * A payload that is not a JSON array is refused with nothing imported. Inside the array, chunks are committed as
+     * they are read, so a malformed element cannot undo them : the import stops there and the report lists the rows
+     * handled so far, followed by the malformed element as an INVALID row. The elements after it are not read.
+     */
+    public BulkRegistrationResponse importJson(InputStream input) throws IOException {
+        Import bulkImport = new Import();
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException();
+            }
+            try {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    bulkImport.add(objectMapper.readValue(parser, SignupRequest.class));
+                }
+                if (parser.currentToken() != JsonToken.END_ARRAY) {
+                    return bulkImport.stop("Element is not a user object : the import stopped here");
+                }
+            } catch (JsonProcessingException e) {
+                return bulkImport.stop("Malformed JSON : the import stopped here");
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException();
+        }
+        return bulkImport.finish();
+    }
+
+    /**
+     * The first line names the columns (email, firstName, lastName, password, in any order).
+     */
+    public BulkRegistrationResponse importCsv(Reader input) throws IOException {
+        Import bulkImport = new Import();
+        BufferedReader reader = new BufferedReader(input);
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new BadRequestException();
+        }
+
+        List<String> header = parseCsvLine(headerLine);
+        int[] columns = new int[CSV_COLUMNS.length];
+        for (int i = 0; i < CSV_COLUMNS.length; i++) {
+            columns[i] = header.indexOf(CSV_COLUMNS[i]);
+            if (columns[i] < 0) {
+                throw new BadRequestException();
+            }
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(line);
+            SignupRequest request = new SignupRequest();
+            request.setEmail(field(fields, columns[0]));
+            request.setFirstName(field(fields, columns[1]));
+            request.setLastName(field(fields, columns[2]));
+            request.setPassword(field(fields, columns[3]));
+            bulkImport.add(request);
+        }
+        return bulkImport.finish();
+    }
+
+    private void importChunk(List<Row> chunk, Set<String> seenEmails, BulkRegistrationResponse report) {
+        Map<String, Row> candidates = new HashMap<>();
+        for (Row row : chunk) {
+            Set<ConstraintViolation<SignupRequest>> violations = validator.validate(row.request);
+            if (!violations.isEmpty()) {
+                row.result(Status.INVALID, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+            } else if (!seenEmails.add(row.key())) {
+                row.result(Status.DUPLICATE, "Email appears more than once in the import");
+            } else {
+                candidates.put(row.key(), row);
+            }
+        }
+
+        List<String> emails = candidates.values().stream()
+                .map(row -> row.request.getEmail())
+                .filter(registeredEmailFilter::mightBeTaken)
+                .collect(Collectors.toList());
+        if (!emails.isEmpty()) {
+            for (String existingEmail : userRepository.findExistingEmails(emails)) {
+                Row row = candidates.remove(existingEmail.toLowerCase(Locale.ROOT));
+                if (row != null) {
+                    row.result(Status.DUPLICATE, "Email is already taken");
+                }
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            List<Row> rows = new ArrayList<>(candidates.values());
+            insert(rows, hashAll(rows));
+        }
+
+        chunk.sort(Comparator.comparingInt(row -> row.number));
+        for (Row row : chunk) {
+            report.add(new BulkRegistrationRow(row.number, row.request.getEmail(), row.status, row.message));
+        }
+    }
+
+    private List<User> hashAll(List<Row> rows) {
+        List<Future<String>> hashes = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            hashes.add(hashExecutor.submit(() -> passwordEncoder.encode(row.request.getPassword())));
+        }
+
+        List<User> users = new ArrayList<>(rows.size());
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                SignupRequest request = rows.get(i).request;
+                users.add(new User(request.getEmail(), request.getLastName(), request.getFirstName(), hashes.get(i).get(), false));
+            }
+        } catch (InterruptedException e) {
+            hashes.forEach(hash -> hash.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            hashes.forEach(hash -> hash.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return users;
+    }
+
+    // An email registered meanwhile fails the whole batch : the chunk is then inserted row by row.
+    private void insert(List<Row> rows, List<User> users) {
+        try {
+            userRepository.insertAll(users);
+            rows.forEach(row -> row.result(Status.CREATED, null));
+            users.forEach(user -> registeredEmailFilter.add(user.getEmail()));
+        } catch (DuplicateKeyException e) {
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    userRepository.insertAll(Collections.singletonList(users.get(i)));
+                    rows.get(i).result(Status.CREATED, null);
+                    registeredEmailFilter.add(users.get(i).getEmail());
+                } catch (DuplicateKeyException duplicate) {
+                    rows.get(i).result(Status.DUPLICATE, "Email is already taken");
+                }
+            }
+        }
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column < fields.size() ? fields.get(column) : null;
+    }
+
+    // Comma separated fields, optionally double quoted, with "" standing for a quote inside a quoted field.
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static final class Row {
+        private final int number;
+        private final SignupRequest request;
+        private Status status;
+        private String message;
+
+        private Row(int number, SignupRequest request) {
+            this.number = number;
+            this.request = request;
+        }
+
+        private String key() {
+            return request.getEmail().toLowerCase(Locale.ROOT);
+        }
+
+        private void result(Status status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+    }
+
+    private static final class HashThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "import-hash-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private final class Import {
+        private final BulkRegistrationResponse report = new BulkRegistrationResponse();
+        private final Set<String> seenEmails = new HashSet<>();
+        private final List<Row> chunk = new ArrayList<>(chunkSize);
+        private int rowCount;
+
+        private void add(SignupRequest request) {
+            chunk.add(new Row(++rowCount, request));
+            if (chunk.size() >= chunkSize) {
+                importChunk(chunk, seenEmails, report);
+                chunk.clear();
+            }
+        }
+
+        private BulkRegistrationResponse finish() {
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, seenEmails, report);
+                chunk.clear();
+            }
+            return report;
+        }
+
+        private BulkRegistrationResponse stop(String message) {
+            finish();
+            report.add(new BulkRegistrationRow(++rowCount, null, Status.INVALID, message));
+            return report;
+        }
+    }
+}
@@ -1,19 +1,75 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final SessionRepository sessionRepository;
+
+    private final UserDetailsServiceImpl userDetailsService;
+
+    private final RefreshTokenStore refreshTokenStore;
+
+    private final TokenRevocationList tokenRevocationList;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserService(UserRepository userRepository,
+                       SessionRepository sessionRepository,
+                       UserDetailsServiceImpl userDetailsService,
+                       RefreshTokenStore refreshTokenStore,
+                       TokenRevocationList tokenRevocationList,
+                       ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.sessionRepository = sessionRepository;
+        this.userDetailsService = userDetailsService;
+        this.refreshTokenStore = refreshTokenStore;
+        this.tokenRevocationList = tokenRevocationList;
+        this.eventPublisher = eventPublisher;
     }
 
+    /**
+     * Gives back the seats of the user's bookings, to the waitlists too, then deletes the user (the waitlist rows go with
+     * the foreign key cascade). Everything kept in memory about the user only changes once the deletion is committed :
+     * a failed delete must leave the user able to log in, with the email still known as taken.
+     */
+    @Transactional
     public void delete(Long id) {
+        // already in the persistence context when the controller has just looked the user up
+        User user = this.userRepository.findById(id).orElse(null);
+
+        // session rows first, for the same lock order as the bookings
+        List<Long> sessionIds = this.sessionRepository.lockBookedSessions(id);
+        this.sessionRepository.removeParticipations(id, sessionIds);
+        sessionIds.forEach(sessionId -> this.eventPublisher.publishEvent(new SeatReleasedEvent(sessionId)));
+
         this.userRepository.deleteById(id);
+        if (user != null) {
+            this.eventPublisher.publishEvent(new UserDeletedEvent(id, user.getEmail()));
+        }
+    }
+
+    /**
+     * Drops the cached principal and refuses the tokens issued so far, once the deletion is committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserDeleted(UserDeletedEvent event) {
+        this.userDetailsService.evictById(event.getUserId());
+        this.refreshTokenStore.revokeUser(event.getUserId());
+        this.tokenRevocationList.revokeUser(event.getUserId());
     }
 
     public User findById(Long id) {
@@ -0,0 +1,84 @@
+package com.openclassrooms.starterjwt.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+
+/**
+ * Serves the waitlists in the background : cancellations only mark their session, and the sessions marked since the
+ * last run are promoted together, so the request that freed the seat never waits for it.
+ */
+@Component
+public class WaitlistPromoter {
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistPromoter.class);
+
+    private final WaitlistRepository waitlistRepository;
+    private final int batchSize;
+
+    private final Set<Long> pendingSessions = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder promotions = new LongAdder();
+
+    public WaitlistPromoter(WaitlistRepository waitlistRepository,
+                            @Value("${oc.app.waitlistPromotionBatchSize}") int batchSize) {
+        this.waitlistRepository = waitlistRepository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Only marks the session once the cancellation is committed, so the promotion sees the freed seat.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatReleased(SeatReleasedEvent event) {
+        pendingSessions.add(event.getSessionId());
+    }
+
+    /**
+     * The marks only live in memory : at startup, the sessions that still have free seats and waiting users are marked again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void requeueOpenSessions() {
+        pendingSessions.addAll(waitlistRepository.findSessionsToPromote());
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.waitlistPromotionMs}")
+    public void promotePending() {
+        List<Long> batch = new ArrayList<>(pendingSessions);
+        pendingSessions.removeAll(batch);
+
+        for (Long sessionId : batch) {
+            try {
+                int consumed = waitlistRepository.promote(sessionId, batchSize);
+                promotions.add(consumed);
+                if (consumed > 0) {
+                    // more seats or more users may be left : looked at again on the next run
+                    pendingSessions.add(sessionId);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Waitlist promotion failed for session {}", sessionId, e);
+                pendingSessions.add(sessionId);
+            }
+        }
+    }
+
+    public int getPendingSessions() {
+        return pendingSessions.size();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+}
@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.springframework.stereotype.Service;
+
+@Service
+public class WaitlistService {
+    private final WaitlistRepository waitlistRepository;
+
+    private final SessionRepository sessionRepository;
+
+    private final UserRepository userRepository;
+
+    public WaitlistService(WaitlistRepository waitlistRepository, SessionRepository sessionRepository, UserRepository userRepository) {
+        this.waitlistRepository = waitlistRepository;
+        this.sessionRepository = sessionRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Queues the user on a full session and returns his 1-based position. Only full sessions have a waitlist :
+     * joining one with free seats, or one the user is already booked on or queued for, is a BadRequestException.
+     */
+    public long join(Long id, Long userId) {
+        if (this.waitlistRepository.enqueue(id, userId) == 0) {
+            if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
+                throw new NotFoundException();
+            }
+            throw new BadRequestException();
+        }
+        return getPosition(id, userId);
+    }
+
+    public void leave(Long id, Long userId) {
+        if (this.waitlistRepository.dequeue(id, userId) == 0) {
+            throw new NotFoundException();
+        }
+    }
+
+    /**
+     * Returns the 1-based position of the user in the waitlist of the session. NotFoundException if he isn't queued,
+     * which is also the case once he has been promoted.
+     */
+    public long getPosition(Long id, Long userId) {
+        WaitlistEntry entry = this.waitlistRepository.findBySessionIdAndUserId(id, userId).orElseThrow(NotFoundException::new);
+        return this.waitlistRepository.countBySessionIdAndIdLessThanEqual(id, entry.getId());
+    }
+}
@@ -0,0 +1,144 @@
+package com.openclassrooms.starterjwt.util;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent cache holding at most {@code maxSize} entries, each one expiring at its own deadline.
+ * When the cache is full, expired entries are purged first and, if still needed, the batch of
+ * entries closest to their deadline is dropped so the cost of making room is amortized over many puts.
+ * Only one thread makes room at a time : the puts of new keys that arrive meanwhile are skipped rather than
+ * scanning the whole cache too, they only cost a later miss.
+ */
+public class BoundedCache<K, V> {
+    private final ConcurrentHashMap<K, Entry<V>> entries;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final AtomicBoolean makingRoom = new AtomicBoolean();
+
+    public BoundedCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>(Math.max(16, Math.min(maxSize, 1 << 16)));
+    }
+
+    public V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses.increment();
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            if (this.entries.remove(key, entry)) {
+                this.evictions.increment();
+            }
+            this.misses.increment();
+            return null;
+        }
+        this.hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value, long expiresAt) {
+        if (this.maxSize <= 0 || value == null || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        if (this.entries.size() >= this.maxSize && !this.entries.containsKey(key)) {
+            if (!this.makingRoom.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                makeRoom();
+            } finally {
+                this.makingRoom.set(false);
+            }
+        }
+        this.entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    /**
+     * Removes the entry and returns its value, or null if it was missing or already expired.
+     */
+    public V remove(K key) {
+        Entry<V> entry = this.entries.remove(key);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void removeIf(Predicate<V> predicate) {
+        this.entries.values().removeIf(entry -> predicate.test(entry.value));
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    private void makeRoom() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = this.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiresAt <= now) {
+                iterator.remove();
+                this.evictions.increment();
+            }
+        }
+
+        int excess = this.entries.size() - (this.maxSize - Math.max(1, this.maxSize / 16));
+        if (excess <= 0) {
+            return;
+        }
+        // keeps the excess entries closest to their deadline, the latest one on top so it can be replaced
+        PriorityQueue<Map.Entry<K, Entry<V>>> soonest = new PriorityQueue<>(excess,
+                Comparator.comparingLong((Map.Entry<K, Entry<V>> candidate) -> candidate.getValue().expiresAt).reversed());
+        for (Map.Entry<K, Entry<V>> candidate : this.entries.entrySet()) {
+            if (soonest.size() < excess) {
+                soonest.add(candidate);
+            } else if (candidate.getValue().expiresAt < soonest.peek().getValue().expiresAt) {
+                soonest.poll();
+                soonest.add(candidate);
+            }
+        }
+        for (Map.Entry<K, Entry<V>> candidate : soonest) {
+            if (this.entries.remove(candidate.getKey(), candidate.getValue())) {
+                this.evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
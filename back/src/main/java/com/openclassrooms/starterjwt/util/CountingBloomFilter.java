@@ -0,0 +1,82 @@
+package com.openclassrooms.starterjwt.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Bloom filter whose cells are 8 bit counters instead of bits, so keys can be removed as well as added.
+ * A counter that reaches 255 sticks there: it can only cause false positives, never false negatives.
+ * Counters are packed four per int and updated with compare-and-set.
+ */
+public class CountingBloomFilter {
+    private static final double LN2 = Math.log(2);
+    private static final int SATURATED = 0xFF;
+
+    private final AtomicIntegerArray cells;
+    private final long cellCount;
+    private final int hashCount;
+
+    public CountingBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int expected = Math.max(expectedInsertions, 1);
+        long cellsNeeded = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (LN2 * LN2));
+        int intCount = (int) Math.min(Math.max((cellsNeeded + 3) / 4, 1), Integer.MAX_VALUE / 2);
+        this.cells = new AtomicIntegerArray(intCount);
+        this.cellCount = intCount * 4L;
+        this.hashCount = (int) Math.max(1, Math.round((double) this.cellCount / expected * LN2));
+    }
+
+    public void add(String key) {
+        long hash = BloomFilter.hash(key);
+        for (int i = 0; i < this.hashCount; i++) {
+            update(cell(hash, i), 1);
+        }
+    }
+
+    /**
+     * Removes a key that was added before. Keys the filter has certainly never seen are ignored.
+     */
+    public void remove(String key) {
+        if (!mightContain(key)) {
+            return;
+        }
+        long hash = BloomFilter.hash(key);
+        for (int i = 0; i < this.hashCount; i++) {
+            update(cell(hash, i), -1);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = BloomFilter.hash(key);
+        for (int i = 0; i < this.hashCount; i++) {
+            long cell = cell(hash, i);
+            if (counter(this.cells.get((int) (cell >>> 2)), cell) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long cell(long hash, int i) {
+        long h2 = Long.rotateRight(hash, 32) | 1;
+        return Math.floorMod(hash + i * h2, this.cellCount);
+    }
+
+    private void update(long cell, int delta) {
+        int index = (int) (cell >>> 2);
+        int shift = (int) (cell & 3) * 8;
+        while (true) {
+            int packed = this.cells.get(index);
+            int counter = (packed >>> shift) & SATURATED;
+            if (counter == SATURATED || (delta < 0 && counter == 0)) {
+                return;
+            }
+            int updated = (packed & ~(SATURATED << shift)) | ((counter + delta) << shift);
+            if (this.cells.compareAndSet(index, packed, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static int counter(int packed, long cell) {
+        return (packed >>> ((int) (cell & 3) * 8)) & SATURATED;
+    }
+}
@@ -0,0 +1,110 @@
+package com.openclassrooms.starterjwt.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token bucket, kept as a single timestamp per key (generic cell rate algorithm) and updated
+ * with a compare-and-set, so concurrent attempts on the same key never lock each other.
+ * At most maxKeys buckets are tracked : the keys that arrive once they all are share one overflow bucket,
+ * so a flood of new keys is limited as a single one until {@link #sweep()} drops the buckets that have refilled.
+ */
+public class TokenBucketLimiter {
+    // timestamp of a bucket that sweep is dropping : a thread that reads it looks the key up again
+    private static final long SWEPT = Long.MIN_VALUE;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicInteger trackedKeys = new AtomicInteger();
+
+    private final AtomicLong overflowBucket = new AtomicLong();
+
+    private final long refillIntervalMs;
+    private final long burstToleranceMs;
+    private final int maxKeys;
+
+    public TokenBucketLimiter(int burst, long refillIntervalMs, int maxKeys) {
+        this.refillIntervalMs = refillIntervalMs;
+        this.burstToleranceMs = refillIntervalMs * (Math.max(burst, 1) - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Takes one token from the key's bucket.
+     * @return 0 when the token was taken, otherwise the number of ms until the next one.
+     */
+    public long tryAcquire(String key) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            AtomicLong bucket = bucketOf(key, now);
+            long theoreticalArrival = bucket.get();
+            if (theoreticalArrival == SWEPT) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            long start = Math.max(theoreticalArrival, now);
+            long waitMs = start - burstToleranceMs - now;
+            if (waitMs > 0) {
+                return waitMs;
+            }
+            if (bucket.compareAndSet(theoreticalArrival, start + refillIntervalMs)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketOf(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (!reserveKey()) {
+            return overflowBucket;
+        }
+
+        AtomicLong created = new AtomicLong(now);
+        bucket = buckets.putIfAbsent(key, created);
+        if (bucket != null) {
+            trackedKeys.decrementAndGet();
+            return bucket;
+        }
+        return created;
+    }
+
+    private boolean reserveKey() {
+        int count;
+        do {
+            count = trackedKeys.get();
+            if (count >= maxKeys) {
+                return false;
+            }
+        } while (!trackedKeys.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Drops the buckets that have refilled completely, they behave exactly like missing ones. A bucket is
+     * marked before it's removed, so a token taken on it concurrently either keeps it or goes to a new one.
+     */
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            AtomicLong bucket = entry.getValue();
+            long theoreticalArrival = bucket.get();
+            if (theoreticalArrival <= now && bucket.compareAndSet(theoreticalArrival, SWEPT)
+                    && buckets.remove(entry.getKey(), bucket)) {
+                trackedKeys.decrementAndGet();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -1,5 +1,7 @@
+DROP TABLE IF EXISTS WAITLIST;
 DROP TABLE IF EXISTS PARTICIPATE;
 DROP TABLE IF EXISTS SESSIONS;
+DROP TABLE IF EXISTS SESSION_SERIES;
 DROP TABLE IF EXISTS USERS;
 DROP TABLE IF EXISTS TEACHERS;
 
@@ -19,10 +21,22 @@ CREATE TABLE `SESSIONS` (
   `description` VARCHAR(2000),
   `date` TIMESTAMP,
   `teacher_id` int,
+  `capacity` INT,
+  `seats_taken` INT NOT NULL DEFAULT 0,
+  `series_id` INT,
+  `is_full` BOOLEAN AS (`capacity` IS NOT NULL AND `seats_taken` >= `capacity`) STORED,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+CREATE TABLE `SESSION_SERIES` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `frequency` VARCHAR(10) NOT NULL,
+  `interval_count` INT NOT NULL,
+  `occurrences` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 CREATE TABLE `USERS` (
   `id` INT PRIMARY KEY AUTO_INCREMENT,
   `last_name` VARCHAR(40),
@@ -35,13 +49,32 @@ CREATE TABLE `USERS` (
 );
 
 CREATE TABLE `PARTICIPATE` (
-  `user_id` INT, 
-  `session_id` INT
+  `user_id` INT NOT NULL,
+  `session_id` INT NOT NULL,
+  PRIMARY KEY (`session_id`, `user_id`)
+);
+
+CREATE TABLE `WAITLIST` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  UNIQUE KEY `uk_waitlist_session_user` (`session_id`, `user_id`),
+  KEY `idx_waitlist_session_id` (`session_id`, `id`)
 );
 
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
+ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`series_id`) REFERENCES `SESSION_SERIES` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `USERS` ADD UNIQUE INDEX `idx_users_email` (`email`);
+ALTER TABLE `SESSIONS` ADD INDEX `idx_sessions_date_id` (`date`, `id`);
+ALTER TABLE `SESSIONS` ADD INDEX `idx_sessions_series_id` (`series_id`, `date`);
+ALTER TABLE `SESSIONS` ADD INDEX `idx_sessions_teacher_date` (`teacher_id`, `date`, `id`);
+ALTER TABLE `SESSIONS` ADD INDEX `idx_sessions_name` (`name`);
+ALTER TABLE `SESSIONS` ADD INDEX `idx_sessions_free_date` (`is_full`, `date`, `id`);
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),
@@ -1,34 +1,51 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.exception.LoginCapacityExceededException;
+import com.openclassrooms.starterjwt.exception.LoginThrottledException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.payload.request.RefreshTokenRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.response.EmailAvailabilityResponse;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.LoginThrottle;
+import com.openclassrooms.starterjwt.security.jwt.JwtParseResult;
+import com.openclassrooms.starterjwt.security.jwt.JwtTokenCache;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.RegisteredEmailFilter;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import io.jsonwebtoken.Jwts;
 
+import java.util.Date;
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
-// 4 Tests
+// 14 Tests
 
 @ExtendWith(MockitoExtension.class)
 public class AuthControllerTests {
@@ -44,9 +61,24 @@ public class AuthControllerTests {
     Authentication authentication;
     @Mock
     AuthenticationManager authenticationManager;
+    @Mock
+    LoginThrottle loginThrottle;
+    @Mock
+    RefreshTokenStore refreshTokenStore;
+    @Mock
+    TokenRevocationList tokenRevocationList;
+    @Mock
+    JwtTokenCache jwtTokenCache;
+    @Mock
+    RegisteredEmailFilter registeredEmailFilter;
 
     private final User user1 = User.builder().id(1L).admin(true).email("ced@ced.com").firstName("john").lastName("doe").password("aeazezeaeazeae").build();
 
+    @AfterEach
+    void clearSecurityContext() { // authenticateUser stores the mocked authentication in the thread's security context
+        SecurityContextHolder.clearContext();
+    }
+
     // -------
     // Login
     // -------
@@ -62,14 +94,13 @@ public class AuthControllerTests {
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authentication);
         when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("test_jwt_token");
         when(authentication.getPrincipal()).thenReturn(userDetails);
-        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user1));
         // Act
-        ResponseEntity<?> response = authController.authenticateUser(loginRequest);
+        ResponseEntity<?> response = authController.authenticateUser(loginRequest, new MockHttpServletRequest());
         // Assert
         verify(authenticationManager, times(1)).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtUtils, times(1)).generateJwtToken(any(Authentication.class));
         verify(authentication, times(1)).getPrincipal();
-        verify(userRepository, times(1)).findByEmail(anyString());
+        verify(userRepository, never()).findByEmail(anyString()); // the admin flag comes from the authenticated principal
         assertThat(response).isNotNull();
         assertThat(response.getBody() instanceof JwtResponse).isNotNull();
         JwtResponse responseBody = (JwtResponse) response.getBody();
@@ -95,13 +126,130 @@ public class AuthControllerTests {
         doThrow(new BadCredentialsException("Invalid username or password")).when(authenticationManager).authenticate(any());
         // Act & Assert
         assertThrows(BadCredentialsException.class, () -> {
-            ResponseEntity<?> response = authController.authenticateUser(loginRequest);
+            ResponseEntity<?> response = authController.authenticateUser(loginRequest, new MockHttpServletRequest());
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
         });
         verify(authenticationManager, times(1)).authenticate(any());
         verify(userRepository, never()).findByEmail(anyString());
     }
 
+    @Test
+    @DisplayName("When the login bulkhead is saturated, ctrlr.loginCapacityExceeded should return a 503 response with a Retry-After header")
+    void testLogin_BulkheadSaturated_503WithRetryAfter() {
+        // Act
+        ResponseEntity<?> response = authController.loginCapacityExceeded(new LoginCapacityExceededException(3));
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+    }
+
+    @Test
+    @DisplayName("When the account or the client address is out of login attempts, the password check should never be run")
+    void testLogin_Throttled_AuthenticationManagerNeverCalled() {
+        // Arrange
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(user1.getEmail());
+        loginRequest.setPassword("invalidPassword");
+        doThrow(new LoginThrottledException(12)).when(loginThrottle).acquire(eq(user1.getEmail()), anyString());
+        // Act & Assert
+        assertThrows(LoginThrottledException.class, () -> authController.authenticateUser(loginRequest, new MockHttpServletRequest()));
+        verify(authenticationManager, never()).authenticate(any());
+    }
+
+    @Test
+    @DisplayName("When a login is throttled, ctrlr.loginThrottled should return a 429 response with a Retry-After header")
+    void testLogin_Throttled_429WithRetryAfter() {
+        // Act
+        ResponseEntity<?> response = authController.loginThrottled(new LoginThrottledException(12));
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("12");
+    }
+
+    // -------
+    // Refresh
+    // -------
+
+    @Test
+    @DisplayName("When a valid refresh token is exchanged, ctrlr.refreshToken should return a new jwt and a new refresh token built from the reloaded user without any password check")
+    void testRefreshToken_ValidToken_200WithRotatedTokens() {
+        // Arrange : the user lost the admin rights and was renamed since the login
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("old_refresh_token");
+        UserDetailsImpl loginSnapshot = new UserDetailsImpl(user1.getId(), user1.getEmail(), "old", "name", true, null);
+        User storedUser = User.builder().id(user1.getId()).admin(false).email(user1.getEmail()).firstName(user1.getFirstName()).lastName(user1.getLastName()).password(user1.getPassword()).build();
+        when(refreshTokenStore.consume("old_refresh_token")).thenReturn(loginSnapshot);
+        when(userRepository.findById(user1.getId())).thenReturn(Optional.of(storedUser));
+        when(refreshTokenStore.issue(any(UserDetailsImpl.class))).thenReturn("new_refresh_token");
+        when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("test_jwt_token");
+        // Act
+        ResponseEntity<?> response = authController.refreshToken(refreshTokenRequest);
+        // Assert
+        verify(authenticationManager, never()).authenticate(any());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        JwtResponse responseBody = (JwtResponse) response.getBody();
+        assert responseBody != null;
+        assertThat(responseBody.getToken()).isEqualTo("test_jwt_token");
+        assertThat(responseBody.getRefreshToken()).isEqualTo("new_refresh_token");
+        assertThat(responseBody.getAdmin()).isFalse();
+        assertThat(responseBody.getFirstName()).isEqualTo(user1.getFirstName());
+        assertThat(responseBody.getLastName()).isEqualTo(user1.getLastName());
+    }
+
+    @Test
+    @DisplayName("When the refresh token belongs to a user deleted since the login, ctrlr.refreshToken should return a 401 response")
+    void testRefreshToken_DeletedUser_401() {
+        // Arrange
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("old_refresh_token");
+        UserDetailsImpl loginSnapshot = new UserDetailsImpl(user1.getId(), user1.getEmail(), user1.getFirstName(), user1.getLastName(), user1.isAdmin(), null);
+        when(refreshTokenStore.consume("old_refresh_token")).thenReturn(loginSnapshot);
+        when(userRepository.findById(user1.getId())).thenReturn(Optional.empty());
+        // Act
+        ResponseEntity<?> response = authController.refreshToken(refreshTokenRequest);
+        // Assert
+        verify(jwtUtils, never()).generateJwtToken(any());
+        verify(refreshTokenStore, never()).issue(any());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    @DisplayName("When an unknown or already used refresh token is exchanged, ctrlr.refreshToken should return a 401 response")
+    void testRefreshToken_UnknownToken_401() {
+        // Arrange
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("unknown_refresh_token");
+        when(refreshTokenStore.consume(anyString())).thenReturn(null);
+        // Act
+        ResponseEntity<?> response = authController.refreshToken(refreshTokenRequest);
+        // Assert
+        verify(jwtUtils, never()).generateJwtToken(any());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    // -------
+    // Logout
+    // -------
+
+    @Test
+    @DisplayName("When a user logs out, ctrlr.logoutUser should revoke his jwt until it expires and drop his refresh token")
+    void testLogout_ValidJwt_TokenRevoked() {
+        // Arrange
+        Date expiration = new Date((System.currentTimeMillis() / 1000 + 60) * 1000); // jwt dates are in seconds
+        when(jwtUtils.parse("test_jwt_token")).thenReturn(JwtParseResult.valid(Jwts.claims().setSubject(user1.getEmail()).setExpiration(expiration)));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer test_jwt_token");
+        RefreshTokenRequest refreshTokenRequest = new RefreshTokenRequest();
+        refreshTokenRequest.setRefreshToken("refresh_token");
+        // Act
+        ResponseEntity<?> response = authController.logoutUser(request, refreshTokenRequest);
+        // Assert
+        verify(tokenRevocationList, times(1)).revokeToken("test_jwt_token", expiration.getTime());
+        verify(jwtTokenCache, times(1)).evict("test_jwt_token");
+        verify(refreshTokenStore, times(1)).consume("refresh_token");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
     // -------
     // Register
     // -------
@@ -110,13 +258,13 @@ public class AuthControllerTests {
     @DisplayName("When a user registers with an email already in DB, ctrlr.registerUser should return a 400 Bad Request response with the expected error message")
     void testRegisterUser_AlreadyExistingUser() {
         // Arrange
-        when(userRepository.existsByEmail(anyString())).thenReturn(true);
+        when(registeredEmailFilter.isTaken(anyString())).thenReturn(true);
         SignupRequest signupRequest = new SignupRequest();
         signupRequest.setEmail("ezaezaezeza@casaze.com");
         // Act
         ResponseEntity<?> response = authController.registerUser(signupRequest);
         // Assert
-        verify(userRepository, times(1)).existsByEmail(anyString());
+        verify(registeredEmailFilter, times(1)).isTaken(anyString());
         verify(userRepository, never()).save(any(User.class));
         assertThat(response).isNotNull();
         assertThat(response.getBody() instanceof MessageResponse).isTrue();
@@ -129,7 +277,7 @@ public class AuthControllerTests {
     @DisplayName("When a user registers with valid datas, ctrlr.registerUser should return a 200 success response with the expected message")
     void testRegisterUser_ValidUser() {
         // Arrange
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
+        when(registeredEmailFilter.isTaken(anyString())).thenReturn(false);
         when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
         when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
             return invocation.getArgument(0);
@@ -142,7 +290,8 @@ public class AuthControllerTests {
         // Act
         ResponseEntity<?> response = authController.registerUser(signupRequest);
         // Assert
-        verify(userRepository, times(1)).existsByEmail(anyString());
+        verify(registeredEmailFilter, times(1)).isTaken(anyString());
+        verify(registeredEmailFilter, times(1)).add(user1.getEmail());
         verify(passwordEncoder, times(1)).encode(user1.getPassword());
         assertThat(response).isNotNull();
         assertThat(response.getBody() instanceof MessageResponse).isTrue();
@@ -150,4 +299,49 @@ public class AuthControllerTests {
         assertThat(((MessageResponse) response.getBody()).getMessage()).isEqualTo("User registered successfully!");
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("When the email gets registered between the check and the insert, ctrlr.registerUser should return a 400 Bad Request response")
+    void testRegisterUser_ConcurrentRegistration_400() {
+        // Arrange
+        when(registeredEmailFilter.isTaken(anyString())).thenReturn(false);
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setEmail(user1.getEmail());
+        signupRequest.setFirstName(user1.getFirstName());
+        signupRequest.setLastName(user1.getLastName());
+        signupRequest.setPassword(user1.getPassword());
+        // Act
+        ResponseEntity<?> response = authController.registerUser(signupRequest);
+        // Assert
+        verify(registeredEmailFilter, never()).add(anyString());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    // -------
+    // EmailAvailable
+    // -------
+
+    @Test
+    @DisplayName("When an email is free, ctrlr.isEmailAvailable should report it as available")
+    void testIsEmailAvailable_FreeEmail_Available() {
+        // Arrange
+        when(registeredEmailFilter.isTaken("free@studio.com")).thenReturn(false);
+        // Act
+        ResponseEntity<?> response = authController.isEmailAvailable("free@studio.com");
+        // Assert
+        assertThat(((EmailAvailabilityResponse) response.getBody()).isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("When an email is taken, ctrlr.isEmailAvailable should report it as unavailable")
+    void testIsEmailAvailable_TakenEmail_Unavailable() {
+        // Arrange
+        when(registeredEmailFilter.isTaken(user1.getEmail())).thenReturn(true);
+        // Act
+        ResponseEntity<?> response = authController.isEmailAvailable(user1.getEmail());
+        // Assert
+        assertThat(((EmailAvailabilityResponse) response.getBody()).isAvailable()).isFalse();
+    }
+}
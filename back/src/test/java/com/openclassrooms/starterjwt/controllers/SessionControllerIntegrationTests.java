@@ -5,8 +5,12 @@ import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionFilter;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,17 +19,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -34,7 +46,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-// 24 Tests
+// 41 Tests
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -48,6 +60,10 @@ public class SessionControllerIntegrationTests {
     private UserRepository userRepository;
     @Autowired
     private SessionMapper sessionMapper;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     private final User user1 = User.builder().id(1L).admin(false).email("user1@ced.com").firstName("user1Fn").lastName("user1Ln").password("aeazezeaeazeae").build();
     private final User user2 = User.builder().id(2L).admin(false).email("user2@ced.com").firstName("user2Fn").lastName("user2Ln").password("aeazezeaeazeae").build();
@@ -163,7 +179,21 @@ public class SessionControllerIntegrationTests {
                 .andExpect(jsonPath("$[1].id").value(2))
                 .andExpect(jsonPath("$[1].name").value(session2.getName()))
                 .andExpect(jsonPath("$[1].description").value(session2.getDescription()));
-        verify(sessionRepository, times(1)).findAll();
+        verify(sessionRepository, times(1)).findSummaryPage(SessionFilter.builder().build(), null, Sort.Direction.ASC, null, 21);
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user asks for the sessions of a teacher with free seats and a name prefix, the filters should all reach the repository query")
+    void user_FindAllWithFilters_FiltersApplied() throws Exception {
+        // Arrange
+        sessionRepository.save(session1.setCapacity(2));
+        // Act & Assert : session1 is full, session2 matches every filter
+        mockMvc.perform(get("/api/session").param("teacherId", "1").param("name", "session").param("freeSeats", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(2));
+        verify(sessionRepository, times(1)).findSummaryPage(SessionFilter.builder().teacherId(1L).namePrefix("session").freeSeats(true).build(), null, Sort.Direction.ASC, null, 21);
     }
 
     @Test
@@ -171,7 +201,7 @@ public class SessionControllerIntegrationTests {
     void nonLoggedUser_FindAll_Unauthorized() throws Exception {
         // Act & Assert
         mockMvc.perform(get("/api/session")).andExpect(status().isUnauthorized());
-        verify(sessionRepository, never()).findAll();
+        verify(sessionRepository, never()).findSummaryPage(any(), any(), any(), any(), anyInt());
     }
 
     @Test
@@ -185,7 +215,7 @@ public class SessionControllerIntegrationTests {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$", hasSize(0)));
-        verify(sessionRepository, times(1)).findAll();
+        verify(sessionRepository, times(1)).findSummaryPage(SessionFilter.builder().build(), null, Sort.Direction.ASC, null, 21);
     }
 
     @Test
@@ -199,7 +229,97 @@ public class SessionControllerIntegrationTests {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$", hasSize(0)));
-        verify(sessionRepository, times(1)).findAll();
+        verify(sessionRepository, times(1)).findSummaryPage(SessionFilter.builder().build(), null, Sort.Direction.ASC, null, 21);
+    }
+
+    @Test
+    @DisplayName("When a user lists the sessions, each row should carry the participant count and whether this user booked it, not the participant ids")
+    void user_FindAll_ParticipantCountAndFlag() throws Exception {
+        // Arrange
+        sessionRepository.save(sessionWithNoParticipant.setId(null));
+        UserDetailsImpl user1Principal = UserDetailsImpl.builder().id(1L).username(user1.getEmail()).firstName(user1.getFirstName()).lastName(user1.getLastName()).admin(false).password(user1.getPassword()).build();
+        // Act & Assert
+        mockMvc.perform(get("/api/session").with(user(user1Principal))).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].participantCount").value(2))
+                .andExpect(jsonPath("$[0].participating").value(true))
+                .andExpect(jsonPath("$[0].teacher_id").value(1))
+                .andExpect(jsonPath("$[0].users").doesNotExist())
+                .andExpect(jsonPath("$[2].participantCount").value(0))
+                .andExpect(jsonPath("$[2].participating").value(false));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a client asks for the sessions without cursor nor size, only the default page should be returned with the next cursor")
+    void user_FindAllWithoutPaging_DefaultPage() throws Exception {
+        // Arrange : more sessions than the default page size of 20
+        sessionRepository.deleteAll();
+        for (int i = 0; i < 25; i++) {
+            sessionRepository.save(Session.builder().name("defaultPageName" + i).description("defaultPageDescription").date(new Date()).teacher(teacher1).users(new ArrayList<>()).build());
+        }
+        // Act & Assert
+        String nextCursor = mockMvc.perform(get("/api/session")).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(20)))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+        mockMvc.perform(get("/api/session").param("cursor", nextCursor)).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user walks through the sessions page by page, every session should be returned once and the last page should have no cursor")
+    void user_FindAllPaginated_FollowCursor() throws Exception {
+        // Arrange
+        sessionRepository.save(session3);
+        // Act & Assert
+        MvcResult firstPage = mockMvc.perform(get("/api/session").param("size", "2")).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+        mockMvc.perform(get("/api/session").param("size", "2").param("cursor", firstPage.getResponse().getHeader("X-Next-Cursor")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user asks for the sessions in descending order, the latest session should come first")
+    void user_FindAllDescending_LatestFirst() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/session").param("sort", "desc")).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[1].id").value(1));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user asks for the sessions of a date window, only the sessions inside it should be returned")
+    void user_FindAllWithDateWindow_OnlyMatchingSessions() throws Exception {
+        // Arrange
+        sessionRepository.save(Session.builder().name("pastSessionName").description("pastSessionDescription").date(new Date(644198400000L)).teacher(teacher1).users(new ArrayList<>()).build());
+        // Act & Assert
+        mockMvc.perform(get("/api/session").param("to", "2000-01-01T00:00:00.000Z")).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("pastSessionName"));
+        mockMvc.perform(get("/api/session").param("from", "2000-01-01T00:00:00.000Z")).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user sends a cursor the API never issued, the API should return a 400 Bad Request response")
+    void user_FindAllWithForgedCursor_BadRequest() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/session").param("cursor", "not-a-cursor")).andExpect(status().isBadRequest());
+        verify(sessionRepository, never()).findSummaryPage(any(), any(), any(), any(), anyInt());
     }
 
     // -------
@@ -250,6 +370,74 @@ public class SessionControllerIntegrationTests {
         verify(sessionRepository, never()).deleteById(anyLong());
     }
 
+    // -------
+    // Series
+    // -------
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a weekly series of a year is created, the API should return a 200 Success response and every occurrence should be stored in the series")
+    void user_CreateSeries_200() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/session/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"weeklyName\", \"description\": \"weeklyDescription\", \"teacher_id\": 1, \"capacity\": 12,"
+                                + " \"start\": \"2024-01-03T18:30:00.000+00:00\", \"frequency\": \"WEEKLY\", \"occurrences\": 52}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.occurrences").value(52))
+                .andExpect(jsonPath("$.dates", hasSize(52)));
+        assertThat(sessionRepository.findAll().stream().filter(session -> session.getSeriesId() != null))
+                .hasSize(52)
+                .allMatch(session -> session.getCapacity() == 12 && "weeklyName".equals(session.getName()));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a series is created for a non existent teacher, the API should return a 404 Not Found response")
+    void user_CreateSeriesUnknownTeacher_404() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/session/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"weeklyName\", \"description\": \"weeklyDescription\", \"teacher_id\": 42,"
+                                + " \"start\": \"2024-01-03T18:30:00.000+00:00\", \"frequency\": \"WEEKLY\", \"occurrences\": 52}"))
+                .andExpect(status().isNotFound());
+        verify(sessionRepository, never()).insertSeries(any(), any());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user books then cancels a whole series, every upcoming session of the series should follow, with matching seat counters")
+    void user_BookAndCancelSeries_200() throws Exception {
+        // Arrange : a 10 weeks course in the future
+        Long seriesId = createFutureSeries(10, null);
+        // Act & Assert
+        mockMvc.perform(post("/api/session/series/{seriesId}/participate/{userId}", seriesId, "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(10));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id"
+                + " WHERE s.series_id = ? AND p.user_id = 3 AND s.seats_taken = 1", Integer.class, seriesId)).isEqualTo(10);
+
+        mockMvc.perform(delete("/api/session/series/{seriesId}/participate/{userId}", seriesId, "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(10));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id"
+                + " WHERE s.series_id = ?", Integer.class, seriesId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(seats_taken) FROM SESSIONS WHERE series_id = ?", Integer.class, seriesId)).isZero();
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When one session of a series is full, booking the series should return a 409 Conflict response and book none of its sessions")
+    void user_BookSeriesWithAFullSession_409() throws Exception {
+        // Arrange : single seat sessions, one of them taken by user 1
+        Long seriesId = createFutureSeries(4, 1);
+        Long takenSessionId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM SESSIONS WHERE series_id = ?", Long.class, seriesId);
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", takenSessionId, "1")).andExpect(status().isOk());
+        // Act & Assert
+        mockMvc.perform(post("/api/session/series/{seriesId}/participate/{userId}", seriesId, "3")).andExpect(status().isConflict());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE user_id = 3", Integer.class)).isZero();
+    }
+
     // -------
     // Participate
     // -------
@@ -264,7 +452,8 @@ public class SessionControllerIntegrationTests {
         String sessionId = "1";
         // Act & Assert
         mockMvc.perform(post("/api/session/{id}/participate/{userId}", sessionId, userId)).andExpect(status().isOk());
-        verify(sessionRepository, times(1)).save(any(Session.class));
+        verify(sessionRepository, times(1)).addParticipant(1L, 1L);
+        verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
@@ -281,6 +470,46 @@ public class SessionControllerIntegrationTests {
         verify(sessionRepository, never()).save(any(Session.class));
     }
 
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user tries to sub to a session with no seat left, the API should return a 409 Conflict response")
+    void user_SubsToAFullSession_409() throws Exception {
+        // Arrange
+        sessionRepository.save(session1.setCapacity(2));
+        // Act & Assert
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", "1", "3")).andExpect(status().isConflict());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a list of users is booked at once, the API should return a 200 Success response with the outcome of each user")
+    void user_SubsAListOfUsers_200() throws Exception {
+        // Arrange
+        sessionRepository.save(sessionWithNoParticipant);
+        // Act & Assert
+        mockMvc.perform(post("/api/session/{id}/participate", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": [1, 3, 1, 42]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enrolled").value(2))
+                .andExpect(jsonPath("$.skipped").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rows[2].status").value("DUPLICATE"))
+                .andExpect(jsonPath("$.rows[3].status").value("USER_NOT_FOUND"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When an empty list of users is booked at once, the API should return a 400 Bad Request response")
+    void user_SubsAnEmptyListOfUsers_400() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/session/{id}/participate", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": []}"))
+                .andExpect(status().isBadRequest());
+        verify(sessionRepository, never()).addParticipants(anyLong(), any());
+    }
+
     // -------
     // Unsub
     // -------
@@ -294,7 +523,8 @@ public class SessionControllerIntegrationTests {
         String sessionId = "1";
         // Act & Assert
         mockMvc.perform(delete("/api/session/{id}/participate/{userId}", sessionId, userId)).andExpect(status().isOk());
-        verify(sessionRepository, times(1)).save(any(Session.class));
+        verify(sessionRepository, times(1)).removeParticipant(1L, 1L);
+        verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
@@ -365,4 +595,71 @@ public class SessionControllerIntegrationTests {
         verify(sessionRepository, never()).save(any(Session.class));
     }
 
-}
\ No newline at end of file
+    // -------
+    // Statements
+    // -------
+
+    private Statistics startStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        return statistics;
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user lists the sessions, no session, teacher or participant entity should be loaded")
+    void user_FindAll_NoEntityLoaded() throws Exception {
+        // Arrange
+        Statistics statistics = startStatistics();
+        // Act
+        mockMvc.perform(get("/api/session")).andExpect(status().isOk()).andExpect(jsonPath("$", hasSize(2)));
+        // Assert : the summaries are read by a single JDBC query, Hibernate isn't involved at all
+        long entityLoadCount = statistics.getEntityLoadCount();
+        long collectionLoadCount = statistics.getCollectionLoadCount();
+        long statementCount = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertThat(entityLoadCount).isZero();
+        assertThat(collectionLoadCount).isZero();
+        assertThat(statementCount).isZero();
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user opens a session, the session and its participants should be read with a single statement")
+    void user_FindById_SingleStatement() throws Exception {
+        // Arrange
+        Statistics statistics = startStatistics();
+        // Act
+        mockMvc.perform(get("/api/session/{sessionId}", "1")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.teacher_id").value(1));
+        // Assert
+        long statementCount = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertThat(statementCount).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a user books a session, one seat update and one insert should be issued whatever the number of participants")
+    void user_Participate_StatementCount() throws Exception {
+        // Arrange
+        Statistics statistics = startStatistics();
+        // Act
+        mockMvc.perform(post("/api/session/{sessionId}/participate/{userId}", "1", "3")).andExpect(status().isOk());
+        // Assert
+        long statementCount = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertThat(statementCount).isEqualTo(2);
+    }
+    private Long createFutureSeries(int occurrences, Integer capacity) throws Exception {
+        String response = mockMvc.perform(post("/api/session/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"courseName\", \"description\": \"courseDescription\", \"teacher_id\": 1, \"capacity\": " + capacity + ","
+                                + " \"start\": \"2037-01-05T18:30:00.000+00:00\", \"frequency\": \"WEEKLY\", \"occurrences\": " + occurrences + "}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return new ObjectMapper().readTree(response).get("seriesId").asLong();
+    }
+}
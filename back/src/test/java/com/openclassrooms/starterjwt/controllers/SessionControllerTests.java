@@ -1,17 +1,25 @@
 package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.payload.response.WaitlistPositionResponse;
+import com.openclassrooms.starterjwt.repository.SessionFilter;
+import com.openclassrooms.starterjwt.services.SessionPage;
+import com.openclassrooms.starterjwt.services.SessionSeriesService;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.WaitlistService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -21,7 +29,7 @@ import java.util.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
-// 17 Tests
+// 24 Tests
 
 @ExtendWith(MockitoExtension.class)
 public class SessionControllerTests {
@@ -31,6 +39,10 @@ public class SessionControllerTests {
     SessionMapper sessionMapper;
     @Mock
     SessionService sessionService;
+    @Mock
+    WaitlistService waitlistService;
+    @Mock
+    SessionSeriesService sessionSeriesService;
 
     private final LocalDateTime localDateTime = LocalDateTime.of(2023, 5, 15, 10, 30, 0);
     private final User user1 = User.builder().id(1L).admin(false).email("user1@ced.com").firstName("user1Fn").lastName("user1Ln").password("aeazezeaeazeae").build();
@@ -40,6 +52,8 @@ public class SessionControllerTests {
     private final Session session2 = Session.builder().id(2L).name("session2Name").description("session2Description").date(new Date()).teacher(teacher1).users(new ArrayList<>((Arrays.asList(user1, user2)))).build().setCreatedAt(localDateTime).setUpdatedAt(localDateTime);
     private final SessionDto session1Dto = new SessionDto();
     private final SessionDto session2Dto = new SessionDto();
+    private final SessionSummaryDto session1Summary = new SessionSummaryDto(1L, "session1Name", "session1Description", new Date(), 1L, null, 2, false);
+    private final SessionSummaryDto session2Summary = new SessionSummaryDto(2L, "session2Name", "session2Description", new Date(), 1L, null, 2, false);
 
     public SessionControllerTests(){
         session1Dto.setId(session1.getId());
@@ -95,27 +109,42 @@ public class SessionControllerTests {
     @Test
     @DisplayName("when service.findAll is returning an array of 2 Sessions, ctrlr.findAll should return a 200 Success response with two Sessions")
     void testFindAll_ExistingSessions_200(){
-        List<Session> sessionsList = Arrays.asList(session1, session2);
-        List<SessionDto> sessionsDtoList = Arrays.asList(session1Dto, session2Dto);
-        when(sessionService.findAll()).thenReturn(sessionsList);
-        when(sessionMapper.toDto(anyList())).thenReturn(sessionsDtoList);
-        ResponseEntity<?> response = sessionController.findAll();
-        verify(sessionService, times(1)).findAll();
+        List<SessionSummaryDto> summariesList = Arrays.asList(session1Summary, session2Summary);
+        when(sessionService.findPage(null, SessionFilter.builder().build(), Sort.Direction.ASC, 20, null)).thenReturn(new SessionPage(summariesList, null));
+        ResponseEntity<?> response = sessionController.findAll(null, 20, "asc", null, null, null, null, false);
+        verify(sessionService, times(1)).findPage(null, SessionFilter.builder().build(), Sort.Direction.ASC, 20, null);
+        verify(sessionMapper, never()).toDto(anyList());
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isEqualTo(sessionsDtoList);
+        assertThat(response.getBody()).isEqualTo(summariesList);
     }
 
     @Test
     @DisplayName("when service.findAll is returning an empty array, ctrlr.findAll should return a 200 Success response with an empty array")
     void testFindAll_NoSessions_200(){
-        List<Session> sessionsEmptyList = Collections.emptyList();
-        List<SessionDto> sessionsDtoEmptyList = Collections.emptyList();
-        when(sessionService.findAll()).thenReturn(sessionsEmptyList);
-        when(sessionMapper.toDto(anyList())).thenReturn(sessionsDtoEmptyList);
-        ResponseEntity<?> response = sessionController.findAll();
-        verify(sessionService, times(1)).findAll();
+        List<SessionSummaryDto> summariesEmptyList = Collections.emptyList();
+        when(sessionService.findPage(null, SessionFilter.builder().build(), Sort.Direction.ASC, 20, null)).thenReturn(new SessionPage(summariesEmptyList, null));
+        ResponseEntity<?> response = sessionController.findAll(null, 20, "asc", null, null, null, null, false);
+        verify(sessionService, times(1)).findPage(null, SessionFilter.builder().build(), Sort.Direction.ASC, 20, null);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(summariesEmptyList);
+        assertThat(response.getHeaders().containsKey(SessionController.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
+    @Test
+    @DisplayName("when service.findPage returns a next cursor, ctrlr.findAll should send it in the X-Next-Cursor header")
+    void testFindAll_MorePages_NextCursorHeader(){
+        when(sessionService.findPage("cursor1", SessionFilter.builder().build(), Sort.Direction.DESC, 1, null)).thenReturn(new SessionPage(Collections.singletonList(session1Summary), "cursor2"));
+        ResponseEntity<?> response = sessionController.findAll("cursor1", 1, "desc", null, null, null, null, false);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).isEqualTo(sessionsDtoEmptyList);
+        assertThat(response.getHeaders().getFirst(SessionController.NEXT_CURSOR_HEADER)).isEqualTo("cursor2");
+    }
+
+    @Test
+    @DisplayName("when the sort direction is neither asc nor desc, ctrlr.findAll should return a 400 Bad Request response")
+    void testFindAll_InvalidSort_400(){
+        ResponseEntity<?> response = sessionController.findAll(null, 20, "sideways", null, null, null, null, false);
+        verify(sessionService, never()).findPage(any(), any(), any(), anyInt(), any());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
     // -------
@@ -283,6 +312,65 @@ public class SessionControllerTests {
         verify(sessionService, never()).noLongerParticipate(anyLong(), anyLong());
     }
 
+    @Test
+    @DisplayName("when an invalid sessionId is passed to ctrl.participateAll, it should return a 400 Bad Request response")
+    void testPostParticipateAll_InvalidSessionId_400(){
+        // Arrange
+        BulkParticipationRequest request = new BulkParticipationRequest();
+        request.setUserIds(Arrays.asList(1L, 2L));
+        // Act
+        ResponseEntity<?> response = sessionController.participateAll("invalidSessionId", request);
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(sessionService, never()).participateAll(anyLong(), anyList());
+    }
+
+    @Test
+    @DisplayName("when an invalid seriesId is passed to ctrl.participateSeries, it should return a 400 Bad Request response")
+    void testPostParticipateSeries_InvalidSeriesId_400(){
+        // Act
+        ResponseEntity<?> response = sessionController.participateSeries("invalidSeriesId", user1.getId().toString());
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(sessionSeriesService, never()).participate(anyLong(), anyLong());
+    }
+
+    // -------
+    // Waitlist
+    // -------
+
+    @Test
+    @DisplayName("when service.join returns a position, ctrl.joinWaitlist should return a 200 Success response with this position")
+    void testPostWaitlist_200(){
+        // Arrange
+        when(waitlistService.join(1L, 1L)).thenReturn(3L);
+        // Act
+        ResponseEntity<?> response = sessionController.joinWaitlist("1", "1");
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(((WaitlistPositionResponse) response.getBody()).getPosition()).isEqualTo(3L);
+    }
+
+    @Test
+    @DisplayName("when an invalid sessionId is passed to ctrl.joinWaitlist, it should return a 400 Bad Request response")
+    void testPostWaitlist_InvalidSessionId_400(){
+        // Act
+        ResponseEntity<?> response = sessionController.joinWaitlist("invalidSessionId", "1");
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(waitlistService, never()).join(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("when service.leave returns no value, ctrl.leaveWaitlist should return a 200 Success response")
+    void testDeleteWaitlist_200(){
+        // Act
+        ResponseEntity<?> response = sessionController.leaveWaitlist("1", "1");
+        // Assert
+        verify(waitlistService, times(1)).leave(1L, 1L);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
     /*
     @Test // !!!! to fix cause numberformatexception shouldn't be thrown by the service
     @DisplayName("")
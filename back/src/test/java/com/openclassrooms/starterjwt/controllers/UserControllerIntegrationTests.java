@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,8 +14,11 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -156,4 +160,42 @@ public class UserControllerIntegrationTests {
     void user_DeleteById_404() throws Exception {
         mockMvc.perform(delete("/api/user/{userId}", "2")).andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    // -------
+    // RegisterBulk
+    // -------
+
+    private final UserDetailsImpl adminPrincipal = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").firstName("Admin").lastName("Admin").admin(true).build();
+
+    @Test
+    @DisplayName("When an admin imports a json payload, the API should create the new users and report every row")
+    void admin_RegisterBulkJson_200() throws Exception {
+        String payload = "[{\"email\":\"member1@gym.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"},"
+                + "{\"email\":\"yoga@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"},"
+                + "{\"email\":\"member2@gym.com\",\"firstName\":\"jack\",\"lastName\":\"doe\",\"password\":\"password3\"}]";
+        mockMvc.perform(post("/api/user/bulk").with(user(adminPrincipal)).contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.duplicates").value(1))
+                .andExpect(jsonPath("$.rows[1].status").value("DUPLICATE"));
+        assertThat(userRepository.findByEmail("member2@gym.com")).isPresent();
+    }
+
+    @Test
+    @DisplayName("When an admin imports a csv file, the API should create the new users")
+    void admin_RegisterBulkCsv_200() throws Exception {
+        String csv = "email,firstName,lastName,password\nmember1@gym.com,john,doe,password1\n";
+        mockMvc.perform(post("/api/user/bulk").with(user(adminPrincipal)).contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1));
+        assertThat(userRepository.findByEmail("member1@gym.com")).isPresent();
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    @DisplayName("When a non admin user tries a bulk registration, the API should return a 401 Unauthorized response")
+    void user_RegisterBulk_401() throws Exception {
+        mockMvc.perform(post("/api/user/bulk").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.starterjwt.exception;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 3 Tests
+
+public class ErrorResponseWriterTests {
+
+    private final ErrorResponseWriter errorResponseWriter = new ErrorResponseWriter();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("when an error is written, the response should hold the status and a json body with the status, error, message and path")
+    void testWrite_Unauthorized_JsonBody() throws IOException {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // Act
+        errorResponseWriter.write(response, HttpStatus.UNAUTHORIZED, "Full authentication is required", "/api/session");
+        // Assert
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(body.get("status").asInt()).isEqualTo(401);
+        assertThat(body.get("error").asText()).isEqualTo("Unauthorized");
+        assertThat(body.get("message").asText()).isEqualTo("Full authentication is required");
+        assertThat(body.get("path").asText()).isEqualTo("/api/session");
+    }
+
+    @Test
+    @DisplayName("when the message holds quotes or is missing, the body should still be valid json")
+    void testWrite_EscapedAndNullValues_ValidJson() throws IOException {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // Act
+        errorResponseWriter.write(response, HttpStatus.BAD_REQUEST, "bad \"token\"\n", null);
+        // Assert
+        JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+        assertThat(body.get("message").asText()).isEqualTo("bad \"token\"\n");
+        assertThat(body.get("path").isNull()).isTrue();
+    }
+
+    @Test
+    @DisplayName("when a message is pre-encoded, it should match the MessageResponse json")
+    void testEncodeMessage_ReturnMessageResponseJson() throws IOException {
+        // Act
+        byte[] encoded = ErrorResponseWriter.encodeMessage("Error: Too many login attempts, please retry later");
+        // Assert
+        assertThat(objectMapper.readTree(encoded).get("message").asText()).isEqualTo("Error: Too many login attempts, please retry later");
+    }
+}
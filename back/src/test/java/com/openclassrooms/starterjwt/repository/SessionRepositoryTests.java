@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import org.junit.jupiter.api.BeforeEach;
@@ -7,15 +8,18 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-// 6 Tests
+// 9 Tests
 
 @SpringBootTest
 @Sql(scripts = "classpath:sql/reset-database.sql")
@@ -25,6 +29,8 @@ public class SessionRepositoryTests {
     private SessionRepository sessionRepository;
     @Autowired
     private TeacherRepository teacherRepository;
+    @Autowired
+    private UserRepository userRepository;
 
     private Session session1;
     private Session session2;
@@ -139,4 +145,48 @@ public class SessionRepositoryTests {
         Optional<Session> sessionOptional = sessionRepository.findById(1L);
         assertThat(sessionOptional.isEmpty()).isTrue();
     }
+
+    // -------
+    // FindSummaryPage
+    // -------
+
+    @Test
+    @DisplayName("when filtering the session list by teacher, only the sessions of this teacher should be returned")
+    void testFindSummaryPage_TeacherFilter_OnlyHisSessions(){
+        // Arrange
+        sessionRepository.save(session2);
+        // Act
+        List<Long> sessionIds = summaryIds(SessionFilter.builder().teacherId(session2.getTeacher().getId()).build());
+        // Assert
+        assertThat(sessionIds).containsExactly(session2.getId());
+    }
+
+    @Test
+    @DisplayName("when filtering the session list by name prefix, wildcards in the prefix should be matched literally")
+    void testFindSummaryPage_NamePrefixFilter_WildcardsEscaped(){
+        // Arrange
+        sessionRepository.save(session2);
+        Session lookalike = sessionRepository.save(Session.builder().name("sessionXname3").description("session_description3").date(new Date()).teacher(session2.getTeacher()).build());
+        // Act & Assert
+        assertThat(summaryIds(SessionFilter.builder().namePrefix("session_").build())).containsExactlyInAnyOrder(session1.getId(), session2.getId());
+        assertThat(summaryIds(SessionFilter.builder().namePrefix("sessionX").build())).containsExactly(lookalike.getId());
+    }
+
+    @Test
+    @DisplayName("when filtering the session list on free seats, full sessions should be left out and sessions without capacity kept")
+    void testFindSummaryPage_FreeSeatsFilter_FullSessionsLeftOut(){
+        // Arrange : session2 has a single seat, taken
+        session2.setCapacity(1).setUsers(Collections.singletonList(userRepository.findById(1L).orElseThrow()));
+        sessionRepository.save(session2);
+        // Act
+        List<Long> sessionIds = summaryIds(SessionFilter.builder().freeSeats(true).build());
+        // Assert
+        assertThat(sessionIds).containsExactly(session1.getId());
+    }
+
+    private List<Long> summaryIds(SessionFilter filter) {
+        return sessionRepository.findSummaryPage(filter, null, Sort.Direction.ASC, null, 10).stream()
+                .map(SessionSummaryDto::getId)
+                .collect(Collectors.toList());
+    }
 }
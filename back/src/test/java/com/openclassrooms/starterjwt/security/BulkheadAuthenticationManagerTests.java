@@ -0,0 +1,126 @@
+package com.openclassrooms.starterjwt.security;
+
+import com.openclassrooms.starterjwt.exception.LoginCapacityExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// 4 Tests
+
+@ExtendWith(MockitoExtension.class)
+public class BulkheadAuthenticationManagerTests {
+    @Mock
+    AuthenticationManager delegate;
+
+    private BulkheadAuthenticationManager bulkhead;
+
+    private final Authentication loginAttempt = new UsernamePasswordAuthenticationToken("yoga@studio.com", "test!1234");
+
+    @AfterEach
+    void shutdown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    @DisplayName("When the delegate authenticates the user, the bulkhead should return its authentication and record the latency")
+    void testAuthenticate_ValidCredentials_ReturnDelegateAuthentication() {
+        // Arrange
+        bulkhead = new BulkheadAuthenticationManager(delegate, 1, 1, 2, 5000);
+        when(delegate.authenticate(any())).thenReturn(loginAttempt);
+        // Act
+        Authentication authentication = bulkhead.authenticate(loginAttempt);
+        // Assert
+        assertThat(authentication).isSameAs(loginAttempt);
+        assertThat(bulkhead.getCompletedLogins()).isEqualTo(1);
+        assertThat(bulkhead.getTotalHashNanos()).isGreaterThan(0);
+    }
+
+    @Test
+    @DisplayName("When the delegate rejects the credentials, the same AuthenticationException should be rethrown to the caller")
+    void testAuthenticate_InvalidCredentials_RethrowBadCredentials() {
+        // Arrange
+        bulkhead = new BulkheadAuthenticationManager(delegate, 1, 1, 2, 5000);
+        when(delegate.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+        // Act & Assert
+        assertThrows(BadCredentialsException.class, () -> bulkhead.authenticate(loginAttempt));
+    }
+
+    @Test
+    @DisplayName("When every login thread and queue slot is taken, a new login should be rejected right away")
+    void testAuthenticate_SaturatedPool_RejectWithRetryAfter() throws InterruptedException {
+        // Arrange : one thread and one queue slot, both kept busy by blocked logins
+        bulkhead = new BulkheadAuthenticationManager(delegate, 1, 1, 7, 5000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.authenticate(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return loginAttempt;
+        });
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<Authentication> running = callers.submit(() -> bulkhead.authenticate(loginAttempt));
+        started.await(5, TimeUnit.SECONDS);
+        callers.submit(() -> bulkhead.authenticate(loginAttempt));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bulkhead.getQueueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // Act & Assert
+        LoginCapacityExceededException exception = assertThrows(LoginCapacityExceededException.class, () -> bulkhead.authenticate(loginAttempt));
+        assertThat(exception.getRetryAfterSeconds()).isEqualTo(7);
+        assertThat(bulkhead.getRejectedLogins()).isEqualTo(1);
+        release.countDown();
+        callers.shutdown();
+    }
+
+    @Test
+    @DisplayName("When a queued login isn't served before the wait deadline, the caller should be rejected within the deadline and the login cancelled")
+    void testAuthenticate_SlowPool_RejectAfterWaitTimeout() throws InterruptedException {
+        // Arrange : the only login thread stays busy, the next login waits in the queue
+        bulkhead = new BulkheadAuthenticationManager(delegate, 1, 1, 7, 200);
+        CountDownLatch release = new CountDownLatch(1);
+        when(delegate.authenticate(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return loginAttempt;
+        });
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        Future<Authentication> running = callers.submit(() -> bulkhead.authenticate(loginAttempt));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bulkhead.getActiveLogins() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // Act
+        long start = System.nanoTime();
+        LoginCapacityExceededException exception = assertThrows(LoginCapacityExceededException.class, () -> bulkhead.authenticate(loginAttempt));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Assert : rejected after the 200 ms deadline, well before the blocked login would have let it through
+        assertThat(waitedMs).isBetween(200L, 4000L);
+        assertThat(exception.getRetryAfterSeconds()).isEqualTo(7);
+        assertThat(bulkhead.getQueueDepth()).isZero();
+        // the caller of the blocked login gives up on the same deadline
+        ExecutionException runningFailure = assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS));
+        assertThat(runningFailure.getCause()).isInstanceOf(LoginCapacityExceededException.class);
+        assertThat(bulkhead.getRejectedLogins()).isEqualTo(2);
+        release.countDown();
+        callers.shutdown();
+    }
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.starterjwt.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 5 Tests
+
+public class CalibratedBCryptPasswordEncoderTests {
+
+    // -------
+    // RecommendStrength
+    // -------
+
+    @Test
+    @DisplayName("When no hash fits in the target latency, the minimum cost should be recommended")
+    void testRecommendStrength_TargetTooLow_MinimumStrength() {
+        // Act
+        int strength = CalibratedBCryptPasswordEncoder.recommendStrength(0, 4, 6);
+        // Assert
+        assertThat(strength).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("When the target latency is generous, the recommendation should stop at the maximum cost")
+    void testRecommendStrength_TargetVeryHigh_MaximumStrength() {
+        // Act
+        int strength = CalibratedBCryptPasswordEncoder.recommendStrength(60000, 4, 6);
+        // Assert
+        assertThat(strength).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("When the calibration recommends another cost, the configured one should still be used")
+    void testAdviseStrength_OtherRecommendation_KeepConfiguredStrength() {
+        // Arrange
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+        // Act
+        encoder.adviseStrength(60000, 4, 6);
+        // Assert
+        assertThat(encoder.getStrength()).isEqualTo(5);
+        assertThat(encoder.encode("test!1234")).startsWith("$2a$05$");
+    }
+
+    // -------
+    // UpgradeEncoding
+    // -------
+
+    @Test
+    @DisplayName("When a stored hash uses a lower cost, it should be flagged for an upgrade")
+    void testUpgradeEncoding_LowerCost_ReturnTrue() {
+        // Arrange
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+        // Act & Assert
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("test!1234"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("When a stored hash uses the configured cost or a higher one, or is not a BCrypt hash, it should be left alone")
+    void testUpgradeEncoding_SameOrHigherCostOrUnknownHash_ReturnFalse() {
+        // Arrange
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+        // Act & Assert
+        assertThat(encoder.upgradeEncoding(encoder.encode("test!1234"))).isFalse();
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("test!1234"))).isFalse();
+        assertThat(encoder.upgradeEncoding("not-a-bcrypt-hash")).isFalse();
+        assertThat(encoder.upgradeEncoding(null)).isFalse();
+    }
+}
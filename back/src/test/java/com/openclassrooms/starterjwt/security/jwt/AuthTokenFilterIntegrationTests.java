@@ -3,6 +3,10 @@ package com.openclassrooms.starterjwt.security.jwt;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,13 +23,17 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
 import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
-// 2 Tests
+// 9 Tests
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -35,6 +43,12 @@ public class AuthTokenFilterIntegrationTests {
     AuthTokenFilter authTokenFilter;
     @Autowired
     UserDetailsServiceImpl userDetailsService;
+    @Autowired
+    JwtTokenCache jwtTokenCache;
+    @Autowired
+    TokenRevocationList tokenRevocationList;
+    @Autowired
+    MeterRegistry meterRegistry;
     @MockBean
     JwtUtils jwtUtils;
 
@@ -49,6 +63,11 @@ public class AuthTokenFilterIntegrationTests {
             user1.getPassword()
     );
 
+    @AfterEach
+    void clearTokenCache() {
+        jwtTokenCache.clear();
+    }
+
     // -------
     // DoFilterInternal
     // -------
@@ -58,8 +77,7 @@ public class AuthTokenFilterIntegrationTests {
     void testDoFilterInternalWithMockJwtUtils_ValidJwt() throws ServletException, IOException {
         // Arrange
         // UserDetails principal = new UserDetailsImpl(user1.getId(), user1.getEmail(), user1.getFirstName(), user1.getLastName(), user1.isAdmin(), user1.getPassword());
-        when(jwtUtils.validateJwtToken(anyString())).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(anyString())).thenReturn("yoga@studio.com");
+        when(jwtUtils.parse(anyString())).thenReturn(JwtParseResult.valid(Jwts.claims().setSubject("yoga@studio.com").setExpiration(new Date(System.currentTimeMillis() + 60000))));
         // Create a new HttpServletRequest with a fake valid Jwt
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.addHeader("Authorization", "Bearer " + "JwtOverriddenByMockvalidateJwtToken");
@@ -77,7 +95,7 @@ public class AuthTokenFilterIntegrationTests {
     void testDoFilterInternalWithMockJwtUtils_InvalidJwt() throws ServletException, IOException {
         // Arrange
         // UserDetails principal = new UserDetailsImpl(user1.getId(), user1.getEmail(), user1.getFirstName(), user1.getLastName(), user1.isAdmin(), user1.getPassword());
-        when(jwtUtils.validateJwtToken(anyString())).thenReturn(false);
+        when(jwtUtils.parse(anyString())).thenReturn(JwtParseResult.rejected(JwtParseResult.Status.BAD_SIGNATURE));
         // Create a new HttpServletRequest with a fake invalid Jwt
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.addHeader("Authorization", "Bearer " + "JwtOverriddenByMockvalidateJwtToken");
@@ -89,4 +107,129 @@ public class AuthTokenFilterIntegrationTests {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         assertThat(authentication).isNull();
     }
+
+    @Test
+    @DisplayName("when an already verified jwt is sent again, the principal should be restored without verifying the jwt signature")
+    void testDoFilterInternalWithMockJwtUtils_CachedJwt() throws ServletException, IOException {
+        // Arrange
+        String jwt = "JwtAlreadyVerified";
+        jwtTokenCache.put(jwt, Jwts.claims().setSubject("yoga@studio.com").setExpiration(new Date(System.currentTimeMillis() + 60000)));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse mockResponse = new MockHttpServletResponse();
+        MockFilterChain mockFilterChain = new MockFilterChain();
+        // Act
+        authTokenFilter.doFilterInternal(request, mockResponse, mockFilterChain);
+        // Assert : the signature has not been checked a second time
+        verify(jwtUtils, never()).parse(anyString());
+        UserDetails updatedPrincipal = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertThat(updatedPrincipal.getUsername()).isEqualTo(user1.getEmail());
+    }
+
+    @Test
+    @DisplayName("when a jwt embeds the principal claims, the principal should be built from the jwt without loading the user")
+    void testDoFilterInternalWithMockJwtUtils_PrincipalClaims() throws ServletException, IOException {
+        // Arrange
+        Claims claims = Jwts.claims().setSubject("yoga@studio.com").setExpiration(new Date(System.currentTimeMillis() + 60000));
+        UserDetailsImpl claimsPrincipal = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").firstName("claimFn").lastName("claimLn").admin(true).build();
+        when(jwtUtils.parse(anyString())).thenReturn(JwtParseResult.valid(claims));
+        when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(claimsPrincipal);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + "JwtWithPrincipalClaims");
+        MockHttpServletResponse mockResponse = new MockHttpServletResponse();
+        MockFilterChain mockFilterChain = new MockFilterChain();
+        // Act
+        authTokenFilter.doFilterInternal(request, mockResponse, mockFilterChain);
+        // Assert : the names come from the claims, not from the database
+        UserDetailsImpl updatedPrincipal = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertThat(updatedPrincipal.getFirstName()).isEqualTo("claimFn");
+        assertThat(updatedPrincipal.getAdmin()).isTrue();
+    }
+
+    @Test
+    @DisplayName("when a revoked jwt is sent, even from the token cache, the security context holder should hold no principal")
+    void testDoFilterInternalWithMockJwtUtils_RevokedJwt() throws ServletException, IOException {
+        // Arrange
+        SecurityContextHolder.clearContext();
+        String jwt = "JwtRevokedAtLogout";
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+        jwtTokenCache.put(jwt, Jwts.claims().setSubject("yoga@studio.com").setExpiration(expiration));
+        tokenRevocationList.revokeToken(jwt, expiration.getTime());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse mockResponse = new MockHttpServletResponse();
+        MockFilterChain mockFilterChain = new MockFilterChain();
+        // Act
+        authTokenFilter.doFilterInternal(request, mockResponse, mockFilterChain);
+        // Assert
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    @DisplayName("when a downstream filter throws, the chain should have run once and the exception should reach the caller without being counted as an auth error")
+    void testDoFilterInternal_DownstreamFailure_Propagated() {
+        // Arrange
+        double errorsBefore = outcomeCount("error");
+        AtomicInteger calls = new AtomicInteger();
+        MockFilterChain failingChain = new MockFilterChain(new HttpServlet() {}, (servletRequest, servletResponse, chain) -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("Controller failure");
+        });
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> authTokenFilter.doFilterInternal(new MockHttpServletRequest("GET", "/api/session"), new MockHttpServletResponse(), failingChain));
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(outcomeCount("error")).isEqualTo(errorsBefore);
+    }
+
+    // -------
+    // Metrics
+    // -------
+
+    private double outcomeCount(String outcome) {
+        return meterRegistry.get("auth.filter.outcome").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    @DisplayName("when jwts are verified or rejected, the outcome counters and stage timers should be updated")
+    void testDoFilterInternal_Outcomes_Counted() throws ServletException, IOException {
+        // Arrange
+        double expiredBefore = outcomeCount("expired");
+        double missingBefore = outcomeCount("missing");
+        long verifyCountBefore = meterRegistry.get("auth.filter.stage").tag("stage", "verify").timer().count();
+        when(jwtUtils.parse(anyString())).thenReturn(JwtParseResult.rejected(JwtParseResult.Status.EXPIRED));
+        MockHttpServletRequest expiredRequest = new MockHttpServletRequest("GET", "/api/session");
+        expiredRequest.addHeader("Authorization", "Bearer " + "ExpiredJwt");
+        // Act
+        authTokenFilter.doFilter(expiredRequest, new MockHttpServletResponse(), new MockFilterChain());
+        authTokenFilter.doFilter(new MockHttpServletRequest("GET", "/api/session"), new MockHttpServletResponse(), new MockFilterChain());
+        // Assert
+        assertThat(outcomeCount("expired")).isEqualTo(expiredBefore + 1);
+        assertThat(outcomeCount("missing")).isEqualTo(missingBefore + 1);
+        assertThat(meterRegistry.get("auth.filter.stage").tag("stage", "verify").timer().count()).isEqualTo(verifyCountBefore + 1);
+    }
+
+    @Test
+    @DisplayName("when a public /api/auth route is called, the filter should not even read the jwt")
+    void testDoFilter_PublicRoute_Bypassed() throws ServletException, IOException {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        request.setServletPath("/api/auth/login");
+        request.addHeader("Authorization", "Bearer " + "AnyJwt");
+        MockFilterChain mockFilterChain = new MockFilterChain();
+        // Act
+        authTokenFilter.doFilter(request, new MockHttpServletResponse(), mockFilterChain);
+        // Assert
+        verify(jwtUtils, never()).parse(anyString());
+        assertThat(mockFilterChain.getRequest()).isSameAs(request);
+    }
+
+    @Test
+    @DisplayName("when the filter has run, the earlier security counters should be published as meters too")
+    void testSecurityMetrics_Bound() {
+        // Assert
+        assertThat(meterRegistry.find("auth.jwt.cache").tag("result", "hit").functionCounter()).isNotNull();
+        assertThat(meterRegistry.find("auth.login.password.check").functionTimer()).isNotNull();
+        assertThat(meterRegistry.find("auth.login.throttle").tag("result", "throttled").functionCounter()).isNotNull();
+        assertThat(meterRegistry.find("auth.revocation.size").gauge()).isNotNull();
+    }
 }
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 4 Tests
+
+public class JwtTokenCacheTests {
+
+    private final JwtTokenCache jwtTokenCache = new JwtTokenCache(10);
+
+    private Claims claimsExpiringIn(long millis) {
+        return Jwts.claims().setSubject("yoga@studio.com").setExpiration(new Date(System.currentTimeMillis() + millis));
+    }
+
+    @Test
+    @DisplayName("when a verified token is cached, .get should return its claims and count a hit")
+    void testGet_CachedToken_ReturnClaims() {
+        // Arrange
+        Claims claims = claimsExpiringIn(60000);
+        jwtTokenCache.put("token", claims);
+        // Act
+        Claims cachedClaims = jwtTokenCache.get("token");
+        // Assert
+        assertThat(cachedClaims).isSameAs(claims);
+        assertThat(jwtTokenCache.getHits()).isEqualTo(1);
+        assertThat(jwtTokenCache.getMisses()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("when a token has never been cached, .get should return null and count a miss")
+    void testGet_UnknownToken_ReturnNull() {
+        // Act
+        Claims cachedClaims = jwtTokenCache.get("unknownToken");
+        // Assert
+        assertThat(cachedClaims).isNull();
+        assertThat(jwtTokenCache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("when claims are already expired or carry no expiration, they should not be cached")
+    void testPut_ExpiredOrNoExpiration_NotCached() {
+        // Act
+        jwtTokenCache.put("expiredToken", claimsExpiringIn(-1000));
+        jwtTokenCache.put("noExpirationToken", Jwts.claims().setSubject("yoga@studio.com"));
+        jwtTokenCache.put("nullClaimsToken", null);
+        // Assert
+        assertThat(jwtTokenCache.size()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("when a token is evicted, .get should not return its claims anymore")
+    void testEvict_CachedToken_ReturnNull() {
+        // Arrange
+        jwtTokenCache.put("token", claimsExpiringIn(60000));
+        // Act
+        jwtTokenCache.evict("token");
+        // Assert
+        assertThat(jwtTokenCache.get("token")).isNull();
+    }
+}
@@ -0,0 +1,81 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Not a test : compares the jjwt calls JwtUtils used to make on every request with the pre-derived key / per-thread Mac version.
+// Run it with : mvn test-compile, then launch the main method from the IDE (or java -cp <test classpath> ...JwtUtilsBenchmark).
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtUtilsBenchmark {
+
+    private static final String JWT_SECRET = "openclassrooms";
+
+    private final UserDetailsImpl principal = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").firstName("Admin").lastName("Admin").admin(true).build();
+
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken(principal, null);
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", JWT_SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86400000);
+        jwtUtils.initSigningKey();
+        token = jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public String legacyGenerate() {
+        return Jwts.builder()
+                .setSubject(principal.getUsername())
+                .claim("id", principal.getId())
+                .claim("firstName", principal.getFirstName())
+                .claim("lastName", principal.getLastName())
+                .claim("admin", principal.getAdmin())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 86400000))
+                .signWith(SignatureAlgorithm.HS512, JWT_SECRET)
+                .compact();
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public Claims legacyValidate() {
+        return Jwts.parser().setSigningKey(JWT_SECRET).parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public JwtParseResult parse() {
+        return jwtUtils.parse(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
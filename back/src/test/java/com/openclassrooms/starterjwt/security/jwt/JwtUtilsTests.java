@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.security.jwt;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.junit.jupiter.api.DisplayName;
@@ -21,7 +22,7 @@ import java.util.concurrent.TimeUnit;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.Mockito.when;
 
-// 7 Tests
+// 17 Tests
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -56,6 +57,47 @@ public class JwtUtilsTests {
         assertThat(jwtUtils.getUserNameFromJwtToken(jwt)).isEqualTo(user1.getEmail());
     }
 
+    @Test
+    @DisplayName("when a token is generated, it should embed the principal id, names and admin flag")
+    void testGenerateJwtToken_EmbedPrincipalClaims(){
+        // Arrange
+        UserDetails userDetails = new UserDetailsImpl(user1.getId(), user1.getEmail(), user1.getFirstName(), user1.getLastName(), user1.isAdmin(), user1.getPassword());
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        // Act
+        Claims claims = jwtUtils.getClaimsFromJwtToken(jwtUtils.generateJwtToken(authentication));
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromClaims(claims);
+        // Assert
+        assertThat(principal.getId()).isEqualTo(user1.getId());
+        assertThat(principal.getUsername()).isEqualTo(user1.getEmail());
+        assertThat(principal.getFirstName()).isEqualTo(user1.getFirstName());
+        assertThat(principal.getLastName()).isEqualTo(user1.getLastName());
+        assertThat(principal.getAdmin()).isTrue();
+        assertThat(principal.getPassword()).isNull();
+    }
+
+    @Test
+    @DisplayName("when a token is generated, it should be accepted by a standard jjwt parser using the same secret")
+    void testGenerateJwtToken_ReadableByJjwt(){
+        // Arrange
+        UserDetails userDetails = new UserDetailsImpl(user1.getId(), user1.getEmail(), user1.getFirstName(), user1.getLastName(), user1.isAdmin(), user1.getPassword());
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+        // Act
+        String jwt = jwtUtils.generateJwtToken(authentication);
+        Claims claims = Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(jwt).getBody();
+        // Assert
+        assertThat(claims.getSubject()).isEqualTo(user1.getEmail());
+        assertThat(claims.getExpiration()).isAfter(new Date());
+    }
+
+    @Test
+    @DisplayName("when a token carries no principal claims, .getUserDetailsFromClaims should return null")
+    void testGetUserDetailsFromClaims_NoPrincipalClaims_ReturnNull(){
+        // Arrange
+        Claims claims = Jwts.claims().setSubject(user1.getEmail());
+        // Act & Assert
+        assertThat(jwtUtils.getUserDetailsFromClaims(claims)).isNull();
+    }
+
     // -------
     // ValidateJwt
     // -------
@@ -158,4 +200,106 @@ public class JwtUtilsTests {
         // Assert
         assertThat(userNameAkaEmail).isEqualTo(user1.getEmail());
     }
-}
\ No newline at end of file
+
+    // -------
+    // Parse
+    // -------
+
+    @Test
+    @DisplayName("when a valid jwt is passed, .parse should return a valid result holding the claims")
+    void testParse_ValidJwt_ReturnClaims(){
+        // Arrange
+        String validJwt = Jwts.builder()
+                .setSubject(user1.getEmail())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS512, this.jwtSecret)
+                .compact();
+        // Act
+        JwtParseResult result = jwtUtils.parse(validJwt);
+        // Assert
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.getStatus()).isEqualTo(JwtParseResult.Status.VALID);
+        assertThat(result.getClaims().getSubject()).isEqualTo(user1.getEmail());
+    }
+
+    @Test
+    @DisplayName("when no jwt is passed, .parse should return a MISSING status")
+    void testParse_NoJwt_ReturnMissing(){
+        assertThat(jwtUtils.parse(null).getStatus()).isEqualTo(JwtParseResult.Status.MISSING);
+        assertThat(jwtUtils.parse("").getStatus()).isEqualTo(JwtParseResult.Status.MISSING);
+    }
+
+    @Test
+    @DisplayName("when a structurally invalid jwt is passed, .parse should return a MALFORMED status without any claims")
+    void testParse_GarbageJwt_ReturnMalformed(){
+        assertThat(jwtUtils.parse("InvalidJwt").getStatus()).isEqualTo(JwtParseResult.Status.MALFORMED);
+        assertThat(jwtUtils.parse("a.b.c").getStatus()).isEqualTo(JwtParseResult.Status.MALFORMED);
+        assertThat(jwtUtils.parse("eyJ!.eyJ.sig").getStatus()).isEqualTo(JwtParseResult.Status.MALFORMED);
+        assertThat(jwtUtils.parse("eyJhbGciOiJIUzUxMiJ9.eyJ.sig.extra").getStatus()).isEqualTo(JwtParseResult.Status.MALFORMED);
+        assertThat(jwtUtils.parse("InvalidJwt").getClaims()).isNull();
+    }
+
+    @Test
+    @DisplayName("when an unsigned jwt is passed, .parse should return an UNSUPPORTED status")
+    void testParse_UnsignedJwt_ReturnUnsupported(){
+        // Arrange
+        String unsignedJwt = Jwts.builder()
+                .setSubject(user1.getEmail())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .compact();
+        // Act & Assert
+        assertThat(jwtUtils.parse(unsignedJwt).getStatus()).isEqualTo(JwtParseResult.Status.UNSUPPORTED);
+    }
+
+    @Test
+    @DisplayName("when a jwt signed with another secret is passed, .parse should return a BAD_SIGNATURE status")
+    void testParse_ForeignSignature_ReturnBadSignature(){
+        // Arrange
+        String falseSignatureJwt = Jwts.builder()
+                .setSubject(user1.getEmail())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS512, "falseSecret")
+                .compact();
+        // Act & Assert
+        assertThat(jwtUtils.parse(falseSignatureJwt).getStatus()).isEqualTo(JwtParseResult.Status.BAD_SIGNATURE);
+    }
+
+    @Test
+    @DisplayName("when an expired jwt is passed, .parse should return an EXPIRED status")
+    void testParse_ExpiredJwt_ReturnExpired(){
+        // Arrange
+        String expiredJwt = Jwts.builder()
+                .setSubject(user1.getEmail())
+                .setIssuedAt(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)))
+                .setExpiration(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+        // Act & Assert
+        assertThat(jwtUtils.parse(expiredJwt).getStatus()).isEqualTo(JwtParseResult.Status.EXPIRED);
+    }
+
+    @Test
+    @DisplayName("when a jwt is not valid yet, .parse should return a PREMATURE status until its not before date")
+    void testParse_NotYetValidJwt_ReturnPremature(){
+        // Arrange
+        String prematureJwt = Jwts.builder()
+                .setSubject(user1.getEmail())
+                .setIssuedAt(new Date())
+                .setNotBefore(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+        String startedJwt = Jwts.builder()
+                .setSubject(user1.getEmail())
+                .setIssuedAt(new Date())
+                .setNotBefore(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)))
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+        // Act & Assert
+        assertThat(jwtUtils.parse(prematureJwt).getStatus()).isEqualTo(JwtParseResult.Status.PREMATURE);
+        assertThat(jwtUtils.validateJwtToken(prematureJwt)).isFalse();
+        assertThat(jwtUtils.parse(startedJwt).isValid()).isTrue();
+    }
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 4 Tests
+
+public class RefreshTokenStoreTests {
+
+    private final UserDetailsImpl principal = UserDetailsImpl.builder().id(1L).username("yoga@studio.com").firstName("Admin").lastName("Admin").admin(true).password("$2a$10$hash").build();
+
+    @Test
+    @DisplayName("When an issued refresh token is consumed, the principal should be returned without its password")
+    void testConsume_IssuedToken_ReturnPrincipalSnapshot() {
+        // Arrange
+        RefreshTokenStore store = new RefreshTokenStore(60000, 100);
+        String refreshToken = store.issue(principal);
+        // Act
+        UserDetailsImpl userDetails = store.consume(refreshToken);
+        // Assert
+        assertThat(userDetails.getId()).isEqualTo(1L);
+        assertThat(userDetails.getUsername()).isEqualTo("yoga@studio.com");
+        assertThat(userDetails.getAdmin()).isTrue();
+        assertThat(userDetails.getPassword()).isNull();
+    }
+
+    @Test
+    @DisplayName("When a refresh token is consumed twice, the second exchange should be refused")
+    void testConsume_AlreadyUsedToken_ReturnNull() {
+        // Arrange
+        RefreshTokenStore store = new RefreshTokenStore(60000, 100);
+        String refreshToken = store.issue(principal);
+        store.consume(refreshToken);
+        // Act & Assert
+        assertThat(store.consume(refreshToken)).isNull();
+        assertThat(store.consume("unknown")).isNull();
+        assertThat(store.consume(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("When a refresh token has expired, it should be refused")
+    void testConsume_ExpiredToken_ReturnNull() throws InterruptedException {
+        // Arrange
+        RefreshTokenStore store = new RefreshTokenStore(20, 100);
+        String refreshToken = store.issue(principal);
+        Thread.sleep(40);
+        // Act & Assert
+        assertThat(store.consume(refreshToken)).isNull();
+    }
+
+    @Test
+    @DisplayName("When a user is revoked, all of his refresh tokens should be dropped")
+    void testRevokeUser_IssuedTokens_AllRefused() {
+        // Arrange
+        RefreshTokenStore store = new RefreshTokenStore(60000, 100);
+        String firstToken = store.issue(principal);
+        String secondToken = store.issue(principal);
+        // Act
+        store.revokeUser(1L);
+        // Assert
+        assertThat(store.consume(firstToken)).isNull();
+        assertThat(store.consume(secondToken)).isNull();
+        assertThat(store.size()).isZero();
+    }
+}
@@ -0,0 +1,89 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 5 Tests
+
+public class TokenRevocationListTests {
+
+    private final Claims user1Claims = Jwts.claims().setSubject("yoga@studio.com");
+    private final Claims user2Claims = Jwts.claims().setSubject("user2@studio.com");
+
+    TokenRevocationListTests() {
+        user1Claims.put("id", 1L);
+        user2Claims.put("id", 2L);
+    }
+
+    @Test
+    @DisplayName("when nothing has been revoked, no token should be reported as revoked")
+    void testIsRevoked_EmptyList_ReturnFalse() {
+        // Arrange
+        TokenRevocationList revocationList = new TokenRevocationList(60000, 1000, 100);
+        // Act & Assert
+        assertThat(revocationList.isRevoked("token", user1Claims)).isFalse();
+    }
+
+    @Test
+    @DisplayName("when a token is revoked, only this token should be refused")
+    void testRevokeToken_RevokedToken_OnlyThisTokenRefused() {
+        // Arrange
+        TokenRevocationList revocationList = new TokenRevocationList(60000, 1000, 100);
+        // Act
+        revocationList.revokeToken("loggedOutToken", System.currentTimeMillis() + 60000);
+        // Assert
+        assertThat(revocationList.isRevoked("loggedOutToken", user1Claims)).isTrue();
+        assertThat(revocationList.isRevoked("otherToken", user1Claims)).isFalse();
+    }
+
+    @Test
+    @DisplayName("when a user is revoked, every token carrying his id should be refused")
+    void testRevokeUser_RevokedUser_AllHisTokensRefused() {
+        // Arrange
+        TokenRevocationList revocationList = new TokenRevocationList(60000, 1000, 100);
+        // Act
+        revocationList.revokeUser(1L);
+        // Assert
+        assertThat(revocationList.isRevoked("anyToken", user1Claims)).isTrue();
+        assertThat(revocationList.isRevoked("anotherToken", user1Claims)).isTrue();
+        assertThat(revocationList.isRevoked("anyToken", user2Claims)).isFalse();
+    }
+
+    @Test
+    @DisplayName("when a user is revoked, only the tokens issued up to the revocation should be refused")
+    void testRevokeUser_TokenIssuedAfterRevocation_Accepted() {
+        // Arrange : iat is in seconds, so the later token is issued 2 seconds after the revocation
+        TokenRevocationList revocationList = new TokenRevocationList(60000, 1000, 100);
+        long now = System.currentTimeMillis();
+        Claims issuedBefore = Jwts.claims().setSubject("yoga@studio.com").setIssuedAt(new Date((now / 1000 - 10) * 1000));
+        issuedBefore.put("id", 1L);
+        Claims issuedAfter = Jwts.claims().setSubject("yoga@studio.com").setIssuedAt(new Date((now / 1000 + 2) * 1000));
+        issuedAfter.put("id", 1L);
+        // Act
+        revocationList.revokeUser(1L);
+        // Assert
+        assertThat(revocationList.isRevoked("oldToken", issuedBefore)).isTrue();
+        assertThat(revocationList.isRevoked("newToken", issuedAfter)).isFalse();
+    }
+
+    @Test
+    @DisplayName("when revoked tokens have expired, .advance should forget them")
+    void testAdvance_ExpiredEntries_Removed() throws InterruptedException {
+        // Arrange
+        TokenRevocationList revocationList = new TokenRevocationList(50, 10, 100);
+        revocationList.revokeToken("loggedOutToken", System.currentTimeMillis() + 30);
+        revocationList.revokeUser(2L);
+        // Act
+        Thread.sleep(100);
+        revocationList.advance();
+        // Assert
+        assertThat(revocationList.size()).isZero();
+        assertThat(revocationList.isRevoked("loggedOutToken", user1Claims)).isFalse();
+    }
+}
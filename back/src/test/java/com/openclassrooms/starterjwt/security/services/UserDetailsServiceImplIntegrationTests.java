@@ -8,12 +8,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.jdbc.Sql;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
-// 2 Tests
+// 3 Tests
 
 @SpringBootTest
 @Sql(scripts = "classpath:sql/reset-database.sql")
@@ -34,7 +35,7 @@ public class UserDetailsServiceImplIntegrationTests {
     @DisplayName("When a user can be linked to the target email, his userDetails should be returned")
     void testLoadUserByUsername_EmailExists_ReturnSomeUserDetails(){
         // Arrange
-        userDetailsService = new UserDetailsServiceImpl(userRepository);
+        userDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
         // Act
         UserDetails userDetails = userDetailsService.loadUserByUsername(user1Email);
         // Assert
@@ -46,10 +47,27 @@ public class UserDetailsServiceImplIntegrationTests {
     @DisplayName("When no user can be found using the target email, a UsernameNotFoundException should be thrown")
     void testLoadUserByUsername_EmailDoesntExist_ThrowAUsernameNotFoundException(){
         // Arrange
-        userDetailsService = new UserDetailsServiceImpl(userRepository);
+        userDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
         // Act & Assert
         assertThrows(UsernameNotFoundException.class, () -> {
             userDetailsService.loadUserByUsername("thisEmailDoesntExist@oc.com");
         });
     }
-}
\ No newline at end of file
+
+    // -------
+    // UpdatePassword
+    // -------
+
+    @Test
+    @DisplayName("When a password hash is upgraded, the next lookup should return the new hash from the database")
+    void testUpdatePassword_ExistingUser_NewHashStored(){
+        // Arrange
+        UserDetailsServiceImpl cachingUserDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
+        UserDetails userDetails = cachingUserDetailsService.loadUserByUsername(user1Email);
+        String upgradedPassword = new BCryptPasswordEncoder(4).encode("test!1234");
+        // Act
+        cachingUserDetailsService.updatePassword(userDetails, upgradedPassword);
+        // Assert
+        assertThat(cachingUserDetailsService.loadUserByUsername(user1Email).getPassword()).isEqualTo(upgradedPassword);
+    }
+}
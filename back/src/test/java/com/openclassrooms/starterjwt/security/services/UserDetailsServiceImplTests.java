@@ -16,9 +16,9 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
-// 2 Tests
+// 7 Tests
 
 @ExtendWith(MockitoExtension.class)
 public class UserDetailsServiceImplTests {
@@ -39,7 +39,7 @@ public class UserDetailsServiceImplTests {
     @DisplayName("When a user can be linked to the target email, his userDetails should be returned")
     void testLoadUserByUsername_EmailExists_ReturnSomeUserDetails(){
         // Arrange
-        userDetailsService = new UserDetailsServiceImpl(userRepository);
+        userDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
         when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user1));
         // Act
         UserDetails userDetails = userDetailsService.loadUserByUsername(user1Email);
@@ -52,11 +52,90 @@ public class UserDetailsServiceImplTests {
     @DisplayName("When no user can be found using the target email, a UsernameNotFoundException should be thrown")
     void testLoadUserByUsername_EmailDoesntExist_ThrowAUsernameNotFoundException(){
         // Arrange
-        userDetailsService = new UserDetailsServiceImpl(userRepository);
+        userDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
         when(userRepository.findByEmail(anyString())).thenReturn(Optional.empty());
         // Act & Assert
         assertThrows(UsernameNotFoundException.class, () -> {
             userDetailsService.loadUserByUsername("thisEmailDoesntExist@oc.com");
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("When the same user is loaded twice, the second lookup should be served by the cache")
+    void testLoadUserByUsername_LoadedTwice_RepositoryHitOnce(){
+        // Arrange
+        UserDetailsServiceImpl cachingUserDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user1));
+        // Act
+        UserDetails firstLoad = cachingUserDetailsService.loadUserByUsername(user1Email);
+        UserDetails secondLoad = cachingUserDetailsService.loadUserByUsername(user1Email.toUpperCase());
+        // Assert
+        verify(userRepository, times(1)).findByEmail(anyString());
+        assertThat(secondLoad).isSameAs(firstLoad);
+        assertThat(((UserDetailsImpl) firstLoad).getAdmin()).isTrue();
+        assertThat(cachingUserDetailsService.getCacheHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("When a cached user is evicted by email, the next lookup should hit the repository again")
+    void testEvict_CachedUser_RepositoryHitAgain(){
+        // Arrange
+        UserDetailsServiceImpl cachingUserDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user1));
+        cachingUserDetailsService.loadUserByUsername(user1Email);
+        // Act
+        cachingUserDetailsService.evict(user1Email);
+        cachingUserDetailsService.loadUserByUsername(user1Email);
+        // Assert
+        verify(userRepository, times(2)).findByEmail(anyString());
+    }
+
+    @Test
+    @DisplayName("When a cached user is evicted by id, it should be removed from the cache")
+    void testEvictById_CachedUser_RemovedFromCache(){
+        // Arrange
+        UserDetailsServiceImpl cachingUserDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user1));
+        cachingUserDetailsService.loadUserByUsername(user1Email);
+        // Act
+        cachingUserDetailsService.evictById(user1.getId());
+        // Assert
+        assertThat(cachingUserDetailsService.getCacheSize()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("When a user is evicted while being loaded from the database, the loaded principal should not be cached")
+    void testLoadUserByUsername_EvictedDuringLookup_NotCached(){
+        // Arrange : the user is deleted between the database read and the cache put of a concurrent lookup
+        UserDetailsServiceImpl cachingUserDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
+        when(userRepository.findByEmail(anyString())).thenAnswer(invocation -> {
+            cachingUserDetailsService.evictById(user1.getId());
+            return Optional.of(user1);
+        });
+        // Act
+        cachingUserDetailsService.loadUserByUsername(user1Email);
+        // Assert
+        assertThat(cachingUserDetailsService.getCacheSize()).isEqualTo(0);
+    }
+
+    // -------
+    // UpdatePassword
+    // -------
+
+    @Test
+    @DisplayName("When a stored hash is upgraded, the new hash should be persisted and the cached principal dropped")
+    void testUpdatePassword_CachedUser_PersistNewHashAndEvict(){
+        // Arrange
+        UserDetailsServiceImpl cachingUserDetailsService = new UserDetailsServiceImpl(userRepository, 100, 60000);
+        when(userRepository.findByEmail(anyString())).thenReturn(Optional.of(user1));
+        UserDetails userDetails = cachingUserDetailsService.loadUserByUsername(user1Email);
+        String upgradedPassword = "$2a$12$upgradedHashupgradedHashupgradedHashupgradedHashupgr";
+        // Act
+        UserDetails updatedUserDetails = cachingUserDetailsService.updatePassword(userDetails, upgradedPassword);
+        // Assert
+        verify(userRepository).updatePassword(user1Email, upgradedPassword);
+        assertThat(updatedUserDetails.getPassword()).isEqualTo(upgradedPassword);
+        assertThat(((UserDetailsImpl) updatedUserDetails).getId()).isEqualTo(user1.getId());
+        assertThat(cachingUserDetailsService.getCacheSize()).isEqualTo(0);
+    }
+}
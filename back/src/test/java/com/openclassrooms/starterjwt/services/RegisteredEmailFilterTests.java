@@ -0,0 +1,110 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// 6 Tests
+
+@ExtendWith(MockitoExtension.class)
+public class RegisteredEmailFilterTests {
+    @Mock
+    private UserRepository userRepository;
+
+    private RegisteredEmailFilter loadedFilter() {
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            consumer.accept("yoga@studio.com");
+            return null;
+        }).when(userRepository).forEachEmail(any());
+        RegisteredEmailFilter registeredEmailFilter = new RegisteredEmailFilter(userRepository, 100);
+        registeredEmailFilter.rebuild();
+        return registeredEmailFilter;
+    }
+
+    @Test
+    @DisplayName("When an email is definitely not registered, .isTaken should answer without querying the database")
+    void testIsTaken_UnknownEmail_NoDatabaseQuery() {
+        // Arrange
+        RegisteredEmailFilter registeredEmailFilter = loadedFilter();
+        // Act & Assert
+        assertThat(registeredEmailFilter.isTaken("newEmail@studio.com")).isFalse();
+        verify(userRepository, never()).existsByEmail(anyString());
+        assertThat(registeredEmailFilter.getDefinitelyFree()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("When an email may be registered, whatever its case, .isTaken should confirm it with the database")
+    void testIsTaken_RegisteredEmail_DatabaseConfirms() {
+        // Arrange
+        RegisteredEmailFilter registeredEmailFilter = loadedFilter();
+        when(userRepository.existsByEmail("YOGA@studio.com")).thenReturn(true);
+        // Act & Assert
+        assertThat(registeredEmailFilter.isTaken("YOGA@studio.com")).isTrue();
+        assertThat(registeredEmailFilter.getDatabaseChecks()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("When the filter has not been loaded yet, .isTaken should always query the database")
+    void testIsTaken_FilterNotLoaded_DatabaseQueried() {
+        // Arrange
+        RegisteredEmailFilter registeredEmailFilter = new RegisteredEmailFilter(userRepository, 100);
+        when(userRepository.existsByEmail(anyString())).thenReturn(false);
+        // Act & Assert
+        assertThat(registeredEmailFilter.isTaken("newEmail@studio.com")).isFalse();
+        verify(userRepository, times(1)).existsByEmail("newEmail@studio.com");
+    }
+
+    @Test
+    @DisplayName("When emails are added then removed, the filter should follow them")
+    void testAddRemove_FilterUpdated() {
+        // Arrange
+        RegisteredEmailFilter registeredEmailFilter = loadedFilter();
+        // Act
+        registeredEmailFilter.add("member@gym.com");
+        boolean afterAdd = registeredEmailFilter.mightBeTaken("member@gym.com");
+        registeredEmailFilter.remove("member@gym.com");
+        // Assert
+        assertThat(afterAdd).isTrue();
+        assertThat(registeredEmailFilter.mightBeTaken("member@gym.com")).isFalse();
+    }
+
+    @Test
+    @DisplayName("When an email is added while the filter is rebuilt, it should be kept by the rebuilt filter")
+    void testRebuild_EmailAddedDuringScan_Replayed() {
+        // Arrange : the signup happens while the table is scanned, after the scan went past its row
+        RegisteredEmailFilter registeredEmailFilter = new RegisteredEmailFilter(userRepository, 100);
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            consumer.accept("yoga@studio.com");
+            registeredEmailFilter.add("member@gym.com");
+            return null;
+        }).when(userRepository).forEachEmail(any());
+        // Act
+        registeredEmailFilter.rebuild();
+        // Assert
+        assertThat(registeredEmailFilter.mightBeTaken("yoga@studio.com")).isTrue();
+        assertThat(registeredEmailFilter.mightBeTaken("member@gym.com")).isTrue();
+    }
+
+    @Test
+    @DisplayName("When a user deletion is committed, the email should leave the filter")
+    void testOnUserDeleted_EmailRemoved() {
+        // Arrange
+        RegisteredEmailFilter registeredEmailFilter = loadedFilter();
+        // Act
+        registeredEmailFilter.onUserDeleted(new UserDeletedEvent(1L, "yoga@studio.com"));
+        // Assert
+        assertThat(registeredEmailFilter.mightBeTaken("yoga@studio.com")).isFalse();
+    }
+}
@@ -0,0 +1,210 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
+import com.openclassrooms.starterjwt.payload.request.SessionSeriesRequest;
+import com.openclassrooms.starterjwt.payload.request.SessionSeriesRequest.Frequency;
+import com.openclassrooms.starterjwt.payload.response.SeriesParticipationResponse;
+import com.openclassrooms.starterjwt.payload.response.SessionSeriesResponse;
+import com.openclassrooms.starterjwt.repository.SeriesSeat;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+// 10 Tests
+
+@ExtendWith(MockitoExtension.class)
+public class SessionSeriesServiceTests {
+    @InjectMocks
+    private SessionSeriesService sessionSeriesService;
+    @Mock
+    private SessionRepository sessionRepository;
+    @Mock
+    private TeacherRepository teacherRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    // -------
+    // Create
+    // -------
+
+    @Test
+    @DisplayName("When a weekly series of a year is created, the teacher should be checked once and the 52 sessions written in one call")
+    void testCreate_WeeklyForAYear_OneInsertCall() {
+        // Arrange
+        SessionSeriesRequest request = request(Frequency.WEEKLY, LocalDateTime.of(2024, 1, 3, 18, 30));
+        request.setOccurrences(52);
+        when(teacherRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.insertSeries(eq(request), anyList())).thenReturn(7L);
+        // Act
+        SessionSeriesResponse response = sessionSeriesService.create(request);
+        // Assert
+        assertThat(response.getSeriesId()).isEqualTo(7L);
+        assertThat(response.getOccurrences()).isEqualTo(52);
+        assertThat(localDates(response.getDates()).get(51)).isEqualTo(LocalDate.of(2024, 12, 25));
+        verify(teacherRepository, times(1)).existsById(1L);
+        verify(sessionRepository, times(1)).insertSeries(eq(request), anyList());
+    }
+
+    @Test
+    @DisplayName("When the teacher of a series doesn't exist, a NotFoundException should be thrown and nothing inserted")
+    void testCreate_UnknownTeacher_ThrowNotFoundException() {
+        // Arrange
+        SessionSeriesRequest request = request(Frequency.DAILY, LocalDateTime.of(2024, 1, 3, 18, 30));
+        request.setOccurrences(3);
+        when(teacherRepository.existsById(1L)).thenReturn(false);
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> sessionSeriesService.create(request));
+        verify(sessionRepository, never()).insertSeries(any(), anyList());
+    }
+
+    // -------
+    // Occurrences
+    // -------
+
+    @Test
+    @DisplayName("When a monthly series starts on the 31st, shorter months should get their last day and the next ones the 31st again")
+    void testOccurrences_MonthlyFromThe31st_NoDrift() {
+        // Arrange
+        SessionSeriesRequest request = request(Frequency.MONTHLY, LocalDateTime.of(2024, 1, 31, 10, 0));
+        request.setOccurrences(3);
+        // Act
+        List<Date> dates = SessionSeriesService.occurrences(request);
+        // Assert
+        assertThat(localDates(dates)).containsExactly(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 29), LocalDate.of(2024, 3, 31));
+    }
+
+    @Test
+    @DisplayName("When a series ends on an until date, the occurrence falling on that date should be included")
+    void testOccurrences_Until_Inclusive() {
+        // Arrange
+        SessionSeriesRequest request = request(Frequency.DAILY, LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setInterval(2);
+        request.setUntil(date(LocalDateTime.of(2024, 1, 9, 10, 0)));
+        // Act
+        List<Date> dates = SessionSeriesService.occurrences(request);
+        // Assert
+        assertThat(dates).hasSize(5);
+    }
+
+    @Test
+    @DisplayName("When a series gives both an occurrence count and an until date, or neither, a BadRequestException should be thrown")
+    void testOccurrences_CountAndUntil_ThrowBadRequestException() {
+        // Arrange
+        SessionSeriesRequest request = request(Frequency.DAILY, LocalDateTime.of(2024, 1, 1, 10, 0));
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> SessionSeriesService.occurrences(request));
+        request.setOccurrences(3);
+        request.setUntil(date(LocalDateTime.of(2024, 1, 9, 10, 0)));
+        assertThrows(BadRequestException.class, () -> SessionSeriesService.occurrences(request));
+    }
+
+    @Test
+    @DisplayName("When a series would generate more than a year of daily sessions, a BadRequestException should be thrown")
+    void testOccurrences_TooMany_ThrowBadRequestException() {
+        // Arrange
+        SessionSeriesRequest request = request(Frequency.DAILY, LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setUntil(date(LocalDateTime.of(2026, 1, 1, 10, 0)));
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> SessionSeriesService.occurrences(request));
+    }
+
+    // -------
+    // Participate
+    // -------
+
+    @Test
+    @DisplayName("When a user books a series, every upcoming session he isn't booked on yet should be booked in one call")
+    void testParticipate_PartlyBooked_RemainingSessionsBooked() {
+        // Arrange
+        when(userRepository.existsById(3L)).thenReturn(true);
+        when(sessionRepository.lockSeriesSeats(7L, 3L)).thenReturn(Arrays.asList(
+                new SeriesSeat(10L, false, false), new SeriesSeat(11L, true, true), new SeriesSeat(12L, false, false)));
+        // Act
+        SeriesParticipationResponse response = sessionSeriesService.participate(7L, 3L);
+        // Assert
+        verify(sessionRepository, times(1)).addParticipations(3L, Arrays.asList(10L, 12L));
+        assertThat(response.getUpdated()).isEqualTo(2);
+        assertThat(response.getSkipped()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("When one session of the series is full, a SessionFullException should be thrown and no session booked")
+    void testParticipate_OneSessionFull_ThrowSessionFullException() {
+        // Arrange
+        when(userRepository.existsById(3L)).thenReturn(true);
+        when(sessionRepository.lockSeriesSeats(7L, 3L)).thenReturn(Arrays.asList(
+                new SeriesSeat(10L, false, false), new SeriesSeat(11L, true, false)));
+        // Act & Assert
+        assertThrows(SessionFullException.class, () -> sessionSeriesService.participate(7L, 3L));
+        verify(sessionRepository, never()).addParticipations(anyLong(), anyList());
+    }
+
+    // -------
+    // Unparticipate
+    // -------
+
+    @Test
+    @DisplayName("When a user cancels a series, only his booked sessions should be cancelled and their seats handed to the waitlists")
+    void testNoLongerParticipate_PartlyBooked_BookedSessionsCancelled() {
+        // Arrange
+        when(sessionRepository.lockSeriesSeats(7L, 3L)).thenReturn(Arrays.asList(
+                new SeriesSeat(10L, false, true), new SeriesSeat(11L, false, false)));
+        // Act
+        SeriesParticipationResponse response = sessionSeriesService.noLongerParticipate(7L, 3L);
+        // Assert
+        verify(sessionRepository, times(1)).removeParticipations(3L, Arrays.asList(10L));
+        verify(eventPublisher, times(1)).publishEvent(any(SeatReleasedEvent.class));
+        assertThat(response.getUpdated()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("When a user cancels a series he isn't booked on, a BadRequestException should be thrown")
+    void testNoLongerParticipate_NotBooked_ThrowBadRequestException() {
+        // Arrange
+        when(sessionRepository.lockSeriesSeats(7L, 3L)).thenReturn(Arrays.asList(new SeriesSeat(10L, false, false)));
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> sessionSeriesService.noLongerParticipate(7L, 3L));
+        verify(sessionRepository, never()).removeParticipations(anyLong(), anyList());
+    }
+
+    private static SessionSeriesRequest request(Frequency frequency, LocalDateTime start) {
+        SessionSeriesRequest request = new SessionSeriesRequest();
+        request.setName("weeklyName");
+        request.setDescription("weeklyDescription");
+        request.setTeacher_id(1L);
+        request.setFrequency(frequency);
+        request.setStart(date(start));
+        return request;
+    }
+
+    private static Date date(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static List<LocalDate> localDates(List<Date> dates) {
+        return dates.stream().map(date -> date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate()).collect(Collectors.toList());
+    }
+}
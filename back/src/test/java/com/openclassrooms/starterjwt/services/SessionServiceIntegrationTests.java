@@ -1,25 +1,47 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationResponse;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -27,12 +49,20 @@ import static org.mockito.Mockito.verify;
 @SpringBootTest
 @Sql(scripts = "classpath:sql/reset-database.sql")
 public class SessionServiceIntegrationTests {
+    private static final Logger logger = LoggerFactory.getLogger(SessionServiceIntegrationTests.class);
+
     @Autowired
     private SessionService sessionService;
     @SpyBean
     private SessionRepository sessionRepository;
     @SpyBean
     private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     private final User user1 = User.builder().id(1L).admin(false).email("user1@ced.com").firstName("user1Fn").lastName("user1Ln").password("aeazezeaeazeae").build();
     private final User user2 = User.builder().id(2L).admin(false).email("user2@ced.com").firstName("user2Fn").lastName("user2Ln").password("aeazezeaeazeae").build();
@@ -113,6 +143,30 @@ public class SessionServiceIntegrationTests {
         assertThat(sessions.get(1).getDescription()).isEqualTo(session2.getDescription());
     }
 
+    @Test
+    @DisplayName("When all sessions are loaded and their participants and teachers read, each association should be fetched with one batched statement")
+    void testFindAll_AssociationsRead_BatchFetched() {
+        // Arrange
+        sessionRepository.save(session2);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        // Act
+        List<String> participantsAndTeachers = new TransactionTemplate(transactionManager).execute(status -> {
+            List<String> names = new ArrayList<>();
+            for (Session session : sessionService.findAll()) {
+                session.getUsers().forEach(user -> names.add(user.getFirstName()));
+                names.add(session.getTeacher().getLastName());
+            }
+            return names;
+        });
+        // Assert : sessions, then every participant list at once, then every teacher at once
+        long statementCount = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+        assertThat(participantsAndTeachers).hasSize(6);
+        assertThat(statementCount).isEqualTo(3);
+    }
+
     // -------
     // Update
     // -------
@@ -158,19 +212,164 @@ public class SessionServiceIntegrationTests {
         // replace session 1L with a session with no participants
         sessionRepository.save(sessionWithNoParticipant);
         Mockito.reset(sessionRepository);
-        // constructing what the updatedSession should look like for comparison purposes
-        Session expectedUpdatedSession = Session.builder()
-                .id(1L)
-                .name("session1Name")
-                .description("session1Description")
-                .date(new Date())
-                .teacher(teacher1)
-                .users(new ArrayList<>((Collections.singletonList(user1))))
-                .build();
         // Act
         sessionService.participate(sessionId, userId);
-        // Assert : The service should build the expected update session & pass it to repo.save
-        verify(sessionRepository, times(1)).save(expectedUpdatedSession);
+        // Assert : A single participation row should have been inserted, the session itself isn't saved
+        verify(sessionRepository, times(1)).addParticipant(sessionId, userId);
+        verify(sessionRepository, never()).save(any(Session.class));
+        assertThat(sessionRepository.findById(sessionId).get().getUsers()).extracting(User::getId).containsExactly(userId);
+    }
+
+    @Test
+    @DisplayName("When the same user books the same session from two threads at once, a single participation row should be created")
+    void testParticipate_ConcurrentDuplicates_SingleRow() throws Exception {
+        // Arrange
+        sessionRepository.save(sessionWithNoParticipant);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<Boolean> booking = () -> {
+            start.await();
+            try {
+                sessionService.participate(1L, 1L);
+                return true;
+            } catch (BadRequestException e) {
+                return false;
+            }
+        };
+        // Act
+        Future<Boolean> firstBooking = executor.submit(booking);
+        Future<Boolean> secondBooking = executor.submit(booking);
+        start.countDown();
+        boolean firstBooked = firstBooking.get(10, TimeUnit.SECONDS);
+        boolean secondBooked = secondBooking.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        // Assert : exactly one call inserted the row, the other one was told the user already participates
+        assertThat(firstBooked ^ secondBooked).isTrue();
+        assertThat(sessionRepository.findById(1L).get().getUsers()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("When a user unsubs, only his participation row should be deleted")
+    void testNoLongerParticipate_OtherParticipantsKept() {
+        // Act
+        sessionService.noLongerParticipate(1L, 1L);
+        // Assert
+        verify(sessionRepository, never()).save(any(Session.class));
+        assertThat(sessionRepository.findById(1L).get().getUsers()).extracting(User::getId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("When a user books the last seat, the next booking should be refused with a SessionFullException and nothing inserted")
+    void testParticipate_LastSeat_NextBookingRefused() {
+        // Arrange
+        userRepository.save(user3);
+        sessionRepository.save(Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).capacity(3).users(new ArrayList<>((Arrays.asList(user1, user2)))).build());
+        // Act
+        sessionService.participate(1L, 3L);
+        // Assert
+        assertThrows(SessionFullException.class, () -> sessionService.participate(1L, 3L));
+        assertThat(seatsTaken(1L)).isEqualTo(3);
+        assertThat(participantRows(1L)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("When a booking fails after the seat was taken, the seat should be given back")
+    void testParticipate_AlreadyBooked_SeatRolledBack() {
+        // Act
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 1L));
+        // Assert
+        assertThat(seatsTaken(1L)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("When hundreds of users race for the seats of one session, exactly its capacity should be booked and the counter should match the rows")
+    void testParticipate_ConcurrentBookings_NeverOversold() throws Exception {
+        // Arrange : 200 users for the 25 seats of an empty session
+        int capacity = 25;
+        userRepository.insertAll(IntStream.range(0, 200)
+                .mapToObj(i -> User.builder().email("stress" + i + "@ced.com").firstName("stressFn").lastName("stressLn").password("aeazezeaeazeae").admin(false).build())
+                .collect(Collectors.toList()));
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM USERS WHERE email LIKE 'stress%'", Long.class);
+        sessionRepository.save(Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).capacity(capacity).users(new ArrayList<>()).build());
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> bookings = userIds.stream().map(userId -> (Callable<Void>) () -> {
+            start.await();
+            try {
+                sessionService.participate(1L, userId);
+                booked.incrementAndGet();
+            } catch (SessionFullException e) {
+                refused.incrementAndGet();
+            }
+            return null;
+        }).collect(Collectors.toList());
+        // Act
+        List<Future<Void>> results = new ArrayList<>();
+        bookings.forEach(booking -> results.add(executor.submit(booking)));
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<Void> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        // logged rather than asserted : it depends on the machine running the build
+        logger.info("Concurrent bookings : {} per second", String.format("%.1f", userIds.size() / ((System.nanoTime() - startedAt) / 1e9)));
+        // then every booked user cancels while the refused ones try again
+        List<Long> bookedIds = jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = 1", Long.class);
+        AtomicInteger rebooked = new AtomicInteger();
+        List<Future<?>> secondRound = new ArrayList<>();
+        for (Long userId : userIds) {
+            secondRound.add(executor.submit(() -> {
+                if (bookedIds.contains(userId)) {
+                    sessionService.noLongerParticipate(1L, userId);
+                    return;
+                }
+                try {
+                    sessionService.participate(1L, userId);
+                    rebooked.incrementAndGet();
+                } catch (SessionFullException e) {
+                    // still full at that moment
+                }
+            }));
+        }
+        for (Future<?> result : secondRound) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        // Assert
+        assertThat(booked.get()).isEqualTo(capacity);
+        assertThat(refused.get()).isEqualTo(userIds.size() - capacity);
+        assertThat(rebooked.get()).isBetween(1, capacity);
+        assertThat(seatsTaken(1L)).isEqualTo(rebooked.get());
+        assertThat(participantRows(1L)).isEqualTo(rebooked.get());
+    }
+
+    private int seatsTaken(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT seats_taken FROM SESSIONS WHERE id = ?", Integer.class, sessionId);
+    }
+
+    private int participantRows(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    @Test
+    @DisplayName("When a team is booked at once, the free seats should go to the first new users of the list and the counter should match the rows")
+    void testParticipateAll_Team_SeatsFilledInListOrder() {
+        // Arrange : 3 seats, 2 taken by user1 and user2
+        userRepository.save(user3);
+        userRepository.insertAll(Collections.singletonList(User.builder().email("user4@ced.com").firstName("user4Fn").lastName("user4Ln").password("aeazezeaeazeae").admin(false).build()));
+        Long user4Id = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE email = 'user4@ced.com'", Long.class);
+        sessionRepository.save(Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).capacity(3).users(new ArrayList<>((Arrays.asList(user1, user2)))).build());
+        // Act
+        BulkParticipationResponse response = sessionService.participateAll(1L, Arrays.asList(1L, 3L, user4Id, 999L));
+        // Assert
+        assertThat(response.getEnrolled()).isEqualTo(1);
+        assertThat(response.getSkipped()).isEqualTo(1);
+        assertThat(response.getRejected()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = 1", Long.class)).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(seatsTaken(1L)).isEqualTo(3);
+        assertThat(participantRows(1L)).isEqualTo(3);
     }
 
     // -------
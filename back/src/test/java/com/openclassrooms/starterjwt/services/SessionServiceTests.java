@@ -1,18 +1,28 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationResponse;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationRow;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationRow.Status;
+import com.openclassrooms.starterjwt.repository.SessionCursor;
+import com.openclassrooms.starterjwt.repository.SessionFilter;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
 
 import java.util.*;
 
@@ -21,7 +31,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
-// 14 Tests
+// 23 Tests
 
 @ExtendWith(MockitoExtension.class)
 public class SessionServiceTests {
@@ -31,6 +41,8 @@ public class SessionServiceTests {
     private SessionRepository sessionRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     private final User user1 = User.builder().id(1L).admin(false).email("user1@ced.com").firstName("user1Fn").lastName("user1Ln").password("aeazezeaeazeae").build();
     private final User user2 = User.builder().id(2L).admin(false).email("user2@ced.com").firstName("user2Fn").lastName("user2Ln").password("aeazezeaeazeae").build();
@@ -38,6 +50,8 @@ public class SessionServiceTests {
     private final Teacher teacher1 = Teacher.builder().id(1L).firstName("teacher1Fn").lastName("teacher1Ln").build();
     private final Session session1 = Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).users(new ArrayList<>((Arrays.asList(user1, user2)))).build();
     private final Session session2 = Session.builder().id(2L).name("session2Name").description("session2Description").date(new Date()).teacher(teacher1).users(new ArrayList<>((Arrays.asList(user1, user2)))).build();
+    private final SessionSummaryDto session1Summary = new SessionSummaryDto(1L, "session1Name", "session1Description", new Date(), 1L, null, 2, true);
+    private final SessionSummaryDto session2Summary = new SessionSummaryDto(2L, "session2Name", "session2Description", new Date(), 1L, null, 2, true);
     private final Session sessionWithNoParticipant = Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).users(new ArrayList<>((Collections.emptyList()))).build();
 
     // -------
@@ -124,6 +138,46 @@ public class SessionServiceTests {
         verify(sessionRepository, times(1)).findAll();
     }
 
+    // -------
+    // FindPage
+    // -------
+
+    @Test
+    @DisplayName("When the repository returns one row more than the page size, the page should be trimmed and carry the cursor of its last session")
+    void testFindPage_MoreRowsThanPageSize_ShouldReturnANextCursor() {
+        // Arrange
+        when(sessionRepository.findSummaryPage(SessionFilter.builder().build(), null, Sort.Direction.ASC, 1L, 2)).thenReturn(Arrays.asList(session1Summary, session2Summary));
+        // Act
+        SessionPage page = sessionService.findPage(null, SessionFilter.builder().build(), Sort.Direction.ASC, 1, 1L);
+        // Assert : Expect session1 alone, followed by a cursor pointing at it
+        assertThat(page.getSessions()).containsExactly(session1Summary);
+        SessionCursor nextCursor = SessionCursor.decode(page.getNextCursor());
+        assertThat(nextCursor.getId()).isEqualTo(session1Summary.getId());
+        assertThat(nextCursor.getDate()).isEqualTo(session1Summary.getDate());
+    }
+
+    @Test
+    @DisplayName("When a cursor and an oversized page are requested, the cursor should be decoded and the page size capped")
+    void testFindPage_CursorAndOversizedPage_ShouldQueryAfterTheCursor() {
+        // Arrange
+        SessionFilter filter = SessionFilter.builder().from(new Date(0)).build();
+        String cursor = SessionCursor.of(session1Summary).encode();
+        when(sessionRepository.findSummaryPage(eq(filter), any(SessionCursor.class), eq(Sort.Direction.DESC), isNull(), eq(SessionService.MAX_PAGE_SIZE + 1))).thenReturn(Collections.singletonList(session2Summary));
+        // Act
+        SessionPage page = sessionService.findPage(cursor, filter, Sort.Direction.DESC, 10000, null);
+        // Assert : Expect the last page, without a next cursor
+        assertThat(page.getSessions()).containsExactly(session2Summary);
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("When the cursor cannot be decoded, a BadRequestException should be thrown without querying the repository")
+    void testFindPage_ForgedCursor_ShouldThrowABadRequestException() {
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> sessionService.findPage("bm90LWEtY3Vyc29y", SessionFilter.builder().build(), Sort.Direction.ASC, 20, null));
+        verify(sessionRepository, never()).findSummaryPage(any(), any(), any(), any(), anyInt());
+    }
+
     // -------
     // Update
     // -------
@@ -145,6 +199,20 @@ public class SessionServiceTests {
         assertThat(session.getDate()).isEqualTo(session1.getDate());
     }
 
+    @Test
+    @DisplayName("When a session is updated without capacity, the stored capacity should be kept")
+    void testUpdate_NoCapacity_StoredCapacityKept() {
+        // Arrange
+        Session storedSession = Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).capacity(5).users(new ArrayList<>()).build();
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(storedSession));
+        when(sessionRepository.save(any(Session.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // Act
+        Session session = sessionService.update(1L, session1);
+        // Assert
+        assertThat(session.getCapacity()).isEqualTo(5);
+        assertThat(session.getSeatsTaken()).isEqualTo(2);
+    }
+
     // -------
     // Delete
     // -------
@@ -162,154 +230,186 @@ public class SessionServiceTests {
         verify(sessionRepository, times(1)).deleteById(1L);
     }
 
+    @Test
+    @DisplayName("When a session is created with more participants than its capacity, a BadRequestException should be thrown")
+    void testCreate_MoreParticipantsThanCapacity_ThrowBadRequestException() {
+        // Arrange
+        Session overbookedSession = Session.builder().name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).capacity(1).users(new ArrayList<>((Arrays.asList(user1, user2)))).build();
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> sessionService.create(overbookedSession));
+        verify(sessionRepository, never()).save(any(Session.class));
+    }
+
+    @Test
+    @DisplayName("When a session is saved with its participant list, its taken seats should be counted from that list")
+    void testCreate_WithParticipants_SeatsTakenCounted() {
+        // Arrange
+        when(sessionRepository.save(any(Session.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // Act
+        Session session = sessionService.create(session1);
+        // Assert
+        assertThat(session.getSeatsTaken()).isEqualTo(2);
+    }
+
     // -------
     // Participate
     // -------
 
     @Test
-    @DisplayName("When a user sub to a yoga session, sessionRepository.save should be called")
-    void testSubYogaSession_repositorySaveShouldBeCalled() {
+    @DisplayName("When a user sub to a yoga session, a seat should be taken and a single participation row inserted without loading the session")
+    void testSubYogaSession_ParticipantRowInserted() {
         // Arrange
-        Long userId = 3L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session1));
-        // will try to retrieve user2 : sessionService.participate(1L, 2L);
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user3));
-        // and add it to session1 : sessionService.participate(1L, 2L);
-        when(sessionRepository.save(any(Session.class))).thenAnswer(invocation -> {
-            return invocation.getArgument(0);
-        });
-
-        // constructing what the updatedSession should look like
-        Session expectedUpdatedSession = Session.builder()
-                .id(1L)
-                .name("session1Name")
-                .description("session1Description")
-                .date(new Date())
-                .teacher(teacher1)
-                .users(new ArrayList<>((Arrays.asList(user1, user2, user3))))
-                .build();
-
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 3L)).thenReturn(1);
         // Act
-        sessionService.participate(sessionId, userId);
+        sessionService.participate(1L, 3L);
         // Assert
-        verify(sessionRepository, times(1)).findById(1L);
-        verify(userRepository, times(1)).findById(3L);
-        verify(sessionRepository, times(1)).save(expectedUpdatedSession);
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).reserveSeat(1L);
+        inOrder.verify(sessionRepository).addParticipant(1L, 3L);
+        verify(sessionRepository, never()).findById(anyLong());
+        verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
-    @DisplayName("When a user sub to a non existent yoga session, sessionRepository.save shouldnt be called")
-    void testSubYogaSession_NonExistentSession_repositorySaveShouldntBeCalled() {
+    @DisplayName("When a user sub to a non existent yoga session, a NotFoundException should be thrown")
+    void testSubYogaSession_NonExistentSession_ThrowNotFoundException() {
         // Arrange
-        Long userId = 1L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user1));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         // Act & Assert : Trying to add a user to a non existent session -> NotFoundException
         assertThrows(NotFoundException.class, () -> {
-            sessionService.participate(sessionId, userId);
+            sessionService.participate(1L, 1L);
         });
-        verify(sessionRepository, times(1)).findById(anyLong());
-        verify(sessionRepository, never()).save(any(Session.class));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     @Test
     @DisplayName("When trying to sub a non existent user to a yoga session, a NotFoundException should be thrown")
-    void testSubYogaSession_NonExistentUser_repositorySaveShouldntBeCalled() {
+    void testSubYogaSession_NonExistentUser_ThrowNotFoundException() {
         // Arrange
-        Long userId = 1L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session1));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenReturn(0);
+        when(userRepository.existsById(1L)).thenReturn(false);
 
         // Act & Assert : Trying to add a non existent user to a session -> NotFoundException
         assertThrows(NotFoundException.class, () -> {
-            sessionService.participate(sessionId, userId);
+            sessionService.participate(1L, 1L);
         });
-        verify(sessionRepository, times(1)).findById(anyLong());
         verify(sessionRepository, never()).save(any(Session.class));
     }
 
     @Test
     @DisplayName("When trying to sub an already subbed user, a BadRequestException should be thrown")
-    void testSubYogaSession_AlreadySubUser_repositorySaveShouldntBeCalled() {
+    void testSubYogaSession_AlreadySubUser_ThrowBadRequestException() {
         // Arrange
-        Long userId = 1L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session1));
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user1));
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 1L)).thenReturn(0);
+        when(userRepository.existsById(1L)).thenReturn(true);
 
         // Act & Assert : Already subbed User -> BadRequestException
         assertThrows(BadRequestException.class, () -> {
-            sessionService.participate(sessionId, userId);
+            sessionService.participate(1L, 1L);
         });
-        verify(sessionRepository, times(1)).findById(anyLong());
         verify(sessionRepository, never()).save(any(Session.class));
     }
 
+    @Test
+    @DisplayName("When a user sub to a yoga session with no seat left, a SessionFullException should be thrown and no row inserted")
+    void testSubYogaSession_NoSeatLeft_ThrowSessionFullException() {
+        // Arrange
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+
+        // Act & Assert : Full session -> SessionFullException
+        assertThrows(SessionFullException.class, () -> {
+            sessionService.participate(1L, 3L);
+        });
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+    }
+
     // -------
-    // Unparticipate
+    // ParticipateAll
     // -------
 
     @Test
-    @DisplayName("When a user unsub from a yoga session, sessionRepository.save should be called")
-    void testUnsubYogaSession_repositorySaveShouldBeCalled() {
+    @DisplayName("When a list of users is booked at once, each user should get his own outcome and only the bookable ones within the free seats should be inserted")
+    void testParticipateAll_MixedUsers_OutcomePerUser() {
+        // Arrange : 2 free seats, user1 already booked, user 99 doesn't exist
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(2);
+        Map<Long, Boolean> bookingStates = new HashMap<>();
+        bookingStates.put(1L, true);
+        bookingStates.put(2L, false);
+        bookingStates.put(3L, false);
+        bookingStates.put(4L, false);
+        when(sessionRepository.findBookingStates(eq(1L), anyCollection())).thenReturn(bookingStates);
+        // Act
+        BulkParticipationResponse response = sessionService.participateAll(1L, Arrays.asList(1L, 2L, 2L, 3L, 4L, 99L));
+        // Assert
+        assertThat(response.getRows().stream().map(BulkParticipationRow::getStatus)).containsExactly(
+                Status.ALREADY_BOOKED, Status.ENROLLED, Status.DUPLICATE, Status.ENROLLED, Status.SESSION_FULL, Status.USER_NOT_FOUND);
+        assertThat(response.getEnrolled()).isEqualTo(2);
+        assertThat(response.getSkipped()).isEqualTo(2);
+        assertThat(response.getRejected()).isEqualTo(2);
+        verify(sessionRepository, times(1)).addParticipants(1L, Arrays.asList(2L, 3L));
+    }
+
+    @Test
+    @DisplayName("When a list of users is booked on a non existent session, a NotFoundException should be thrown and nothing inserted")
+    void testParticipateAll_UnknownSession_ThrowNotFoundException() {
         // Arrange
-        Long userId = 1L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(session1));
-        // repo.save will return the parameter it has been called with
-        when(sessionRepository.save(any(Session.class))).thenAnswer(invocation -> {
-            return invocation.getArgument(0);
-        });
+        when(sessionRepository.lockFreeSeats(1L)).thenReturn(null);
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> sessionService.participateAll(1L, Arrays.asList(1L, 2L)));
+        verify(sessionRepository, never()).addParticipants(anyLong(), anyList());
+    }
 
-        Session expectedUpdatedSession = Session.builder()
-                .id(1L)
-                .name("session1Name")
-                .description("session1Description")
-                .date(new Date())
-                .teacher(teacher1)
-                .users(new ArrayList<>((Collections.singletonList(user2))))
-                .build();
+    // -------
+    // Unparticipate
+    // -------
 
+    @Test
+    @DisplayName("When a user unsub from a yoga session, only his participation row should be deleted")
+    void testUnsubYogaSession_ParticipantRowDeleted() {
+        // Arrange
+        when(sessionRepository.releaseSeat(1L)).thenReturn(1);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(1);
         // Act
-        sessionService.noLongerParticipate(sessionId, userId);
-        // Assert : Session with one less user passed to repo.save
-        verify(sessionRepository, times(1)).findById(anyLong());
-        verify(sessionRepository, times(1)).save(expectedUpdatedSession);
+        sessionService.noLongerParticipate(1L, 1L);
+        // Assert
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+        verify(sessionRepository, times(1)).removeParticipant(1L, 1L);
+        verify(sessionRepository, never()).findById(anyLong());
+        verify(sessionRepository, never()).save(any(Session.class));
+        verify(eventPublisher, times(1)).publishEvent(any(SeatReleasedEvent.class));
     }
 
     @Test
     @DisplayName("When a user tries to unsub from a non existent yoga session, a NotFoundException should be thrown")
-    void testUnsubYogaSession_UnknownSession_RepositorySaveShouldntBeCalled() {
+    void testUnsubYogaSession_UnknownSession_ThrowNotFoundException() {
         // Arrange
-        Long userId = 1L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(sessionRepository.releaseSeat(1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
-        // Act & Assert : The repo returns an empty optional -> NotFoundException
+        // Act & Assert : No row deleted and no session -> NotFoundException
         assertThrows(NotFoundException.class, () -> {
-            sessionService.noLongerParticipate(sessionId, userId);
+            sessionService.noLongerParticipate(1L, 1L);
         });
-        verify(sessionRepository, times(1)).findById(anyLong());
-        verify(sessionRepository, never()).deleteById(anyLong());
     }
 
     @Test
     @DisplayName("When a user tries to unsub from a session he is not subbed to, a BadRequestException should be thrown")
-    void testUnsubYogaSession_NotSubbedToTheSession_RepositorySaveShouldntBeCalled() {
+    void testUnsubYogaSession_NotSubbedToTheSession_ThrowBadRequestException() {
         // Arrange
-        Long userId = 1L;
-        Long sessionId = 1L;
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.of(sessionWithNoParticipant));
+        when(sessionRepository.releaseSeat(1L)).thenReturn(1);
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
 
-        // Act & Assert : User is not subbed -> BadRequestException
+        // Act & Assert : User is not subbed -> BadRequestException (and the seat release is rolled back)
         assertThrows(BadRequestException.class, () -> {
-            sessionService.noLongerParticipate(sessionId, userId);
+            sessionService.noLongerParticipate(1L, 1L);
         });
-        verify(sessionRepository, times(1)).findById(anyLong());
-        verify(sessionRepository, never()).deleteById(anyLong());
+        verify(eventPublisher, never()).publishEvent(any());
     }
-}
\ No newline at end of file
+}
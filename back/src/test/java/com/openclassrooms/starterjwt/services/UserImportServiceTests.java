@@ -0,0 +1,231 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkRegistrationResponse;
+import com.openclassrooms.starterjwt.payload.response.BulkRegistrationRow;
+import com.openclassrooms.starterjwt.payload.response.BulkRegistrationRow.Status;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// 10 Tests
+
+@ExtendWith(MockitoExtension.class)
+public class UserImportServiceTests {
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private UserImportService userImportService;
+
+    @BeforeEach
+    void setUp() {
+        userImportService = new UserImportService(userRepository, new RegisteredEmailFilter(userRepository, 100), passwordEncoder,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userImportService.shutdown();
+    }
+
+    private static ByteArrayInputStream json(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // -------
+    // ImportJson
+    // -------
+
+    @Test
+    @DisplayName("When valid rows are imported, they should be hashed and inserted in batches of one chunk")
+    void testImportJson_ValidRows_InsertedByChunk() throws IOException {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        String payload = "[{\"email\":\"a@studio.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"},"
+                + "{\"email\":\"b@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"},"
+                + "{\"email\":\"c@studio.com\",\"firstName\":\"jack\",\"lastName\":\"doe\",\"password\":\"password3\"}]";
+        // Act
+        BulkRegistrationResponse response = userImportService.importJson(json(payload));
+        // Assert : 3 rows with chunks of 2 means 2 duplicate checks and 2 batches
+        verify(userRepository, times(2)).findExistingEmails(anyCollection());
+        verify(userRepository, times(2)).insertAll(anyList());
+        verify(passwordEncoder, times(3)).encode(anyString());
+        assertThat(response.getCreated()).isEqualTo(3);
+        assertThat(response.getRows()).extracting(BulkRegistrationRow::getRow).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    @DisplayName("When rows are imported, their passwords should be hashed on the import pool and each hash should stay with its row")
+    void testImportJson_ValidRows_HashedOnImportPool() throws IOException {
+        // Arrange
+        Set<String> hashingThreads = ConcurrentHashMap.newKeySet();
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> {
+            hashingThreads.add(Thread.currentThread().getName());
+            return "hashed-" + invocation.getArgument(0);
+        });
+        String payload = "[{\"email\":\"a@studio.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"},"
+                + "{\"email\":\"b@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"}]";
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> usersCaptor = ArgumentCaptor.forClass(List.class);
+        // Act
+        userImportService.importJson(json(payload));
+        // Assert
+        verify(userRepository).insertAll(usersCaptor.capture());
+        assertThat(usersCaptor.getValue()).extracting(User::getEmail, User::getPassword)
+                .containsExactlyInAnyOrder(tuple("a@studio.com", "hashed-password1"), tuple("b@studio.com", "hashed-password2"));
+        assertThat(hashingThreads).allMatch(name -> name.startsWith("import-hash-"));
+    }
+
+    @Test
+    @DisplayName("When rows are invalid, repeated in the payload or already registered, they should be reported and never hashed")
+    void testImportJson_RejectedRows_ReportedWithoutHashing() throws IOException {
+        // Arrange
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(Collections.singletonList("yoga@studio.com"));
+        String payload = "[{\"email\":\"not-an-email\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"},"
+                + "{\"email\":\"yoga@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"},"
+                + "{\"email\":\"YOGA@studio.com\",\"firstName\":\"jack\",\"lastName\":\"doe\",\"password\":\"password3\"}]";
+        // Act
+        BulkRegistrationResponse response = userImportService.importJson(json(payload));
+        // Assert
+        verify(passwordEncoder, never()).encode(anyString());
+        verify(userRepository, never()).insertAll(anyList());
+        assertThat(response.getInvalid()).isEqualTo(1);
+        assertThat(response.getDuplicates()).isEqualTo(2);
+        assertThat(response.getRows()).extracting(BulkRegistrationRow::getStatus).containsExactly(
+                BulkRegistrationRow.Status.INVALID, BulkRegistrationRow.Status.DUPLICATE, BulkRegistrationRow.Status.DUPLICATE);
+    }
+
+    @Test
+    @DisplayName("When an email gets registered during the import, only its row should be reported as a duplicate")
+    void testImportJson_ConcurrentRegistration_FallbackRowByRow() throws IOException {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        doThrow(new DuplicateKeyException("duplicate")).when(userRepository).insertAll(argThat(users -> users.size() == 2));
+        doThrow(new DuplicateKeyException("duplicate")).when(userRepository).insertAll(argThat(users -> users.size() == 1 && users.get(0).getEmail().equals("b@studio.com")));
+        String payload = "[{\"email\":\"a@studio.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"},"
+                + "{\"email\":\"b@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"}]";
+        // Act
+        BulkRegistrationResponse response = userImportService.importJson(json(payload));
+        // Assert
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(response.getDuplicates()).isEqualTo(1);
+        assertThat(response.getRows().get(1).getStatus()).isEqualTo(BulkRegistrationRow.Status.DUPLICATE);
+    }
+
+    @Test
+    @DisplayName("When the registered email filter rules out every email of a chunk, no duplicate query should be run")
+    void testImportJson_EmailsDefinitelyFree_NoDuplicateQuery() throws IOException {
+        // Arrange
+        RegisteredEmailFilter registeredEmailFilter = new RegisteredEmailFilter(userRepository, 100);
+        registeredEmailFilter.rebuild();
+        userImportService = new UserImportService(userRepository, registeredEmailFilter, passwordEncoder,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), 2, 2);
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        String payload = "[{\"email\":\"a@studio.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"}]";
+        // Act
+        BulkRegistrationResponse response = userImportService.importJson(json(payload));
+        // Assert
+        verify(userRepository, never()).findExistingEmails(anyCollection());
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(registeredEmailFilter.mightBeTaken("A@studio.com")).isTrue();
+    }
+
+    @Test
+    @DisplayName("When the payload is not a JSON array, a BadRequestException should be thrown")
+    void testImportJson_MalformedPayload_ThrowBadRequest() {
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> userImportService.importJson(json("{\"email\":\"a@studio.com\"}")));
+        assertThrows(BadRequestException.class, () -> userImportService.importJson(json("not json")));
+    }
+
+    @Test
+    @DisplayName("When an element is malformed after chunks were committed, the report should list them and the malformed element as invalid")
+    void testImportJson_MalformedElementAfterCommittedChunk_ReportSoFar() throws IOException {
+        // Arrange : the first chunk of 2 rows is inserted before the parser reaches the broken third element
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        String payload = "[{\"email\":\"a@studio.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"},"
+                + "{\"email\":\"b@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"},"
+                + "{\"email\":";
+        // Act
+        BulkRegistrationResponse response = userImportService.importJson(json(payload));
+        // Assert
+        verify(userRepository, times(1)).insertAll(anyList());
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getInvalid()).isEqualTo(1);
+        assertThat(response.getRows()).extracting(BulkRegistrationRow::getRow).containsExactly(1, 2, 3);
+        assertThat(response.getRows().get(2).getStatus()).isEqualTo(Status.INVALID);
+        assertThat(response.getRows().get(2).getEmail()).isNull();
+    }
+
+    @Test
+    @DisplayName("When an element of the array is not an object, the rows before it should still be imported and reported")
+    void testImportJson_NonObjectElement_ReportSoFar() throws IOException {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+        String payload = "[{\"email\":\"a@studio.com\",\"firstName\":\"john\",\"lastName\":\"doe\",\"password\":\"password1\"}, 42,"
+                + "{\"email\":\"b@studio.com\",\"firstName\":\"jane\",\"lastName\":\"doe\",\"password\":\"password2\"}]";
+        // Act
+        BulkRegistrationResponse response = userImportService.importJson(json(payload));
+        // Assert : the element after the broken one is never read
+        verify(passwordEncoder, times(1)).encode(anyString());
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(response.getRows()).extracting(BulkRegistrationRow::getStatus).containsExactly(Status.CREATED, Status.INVALID);
+    }
+
+    // -------
+    // ImportCsv
+    // -------
+
+    @Test
+    @DisplayName("When a csv file is imported, its columns should be matched by header name and quoted fields unescaped")
+    void testImportCsv_QuotedFields_UsersInserted() throws IOException {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "encoded:" + invocation.getArgument(0));
+        String csv = "password,email,lastName,firstName\n"
+                + "\"pass,\"\"word\",a@studio.com,doe,john\n";
+        // Act
+        BulkRegistrationResponse response = userImportService.importCsv(new StringReader(csv));
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> users = ArgumentCaptor.forClass(List.class);
+        verify(userRepository).insertAll(users.capture());
+        assertThat(response.getCreated()).isEqualTo(1);
+        assertThat(users.getValue().get(0).getPassword()).isEqualTo("encoded:pass,\"word");
+        assertThat(users.getValue().get(0).getFirstName()).isEqualTo("john");
+    }
+
+    @Test
+    @DisplayName("When a csv file misses a column, a BadRequestException should be thrown")
+    void testImportCsv_MissingColumn_ThrowBadRequest() {
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> userImportService.importCsv(new StringReader("email,password\na@studio.com,password1\n")));
+    }
+}
@@ -1,6 +1,8 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,14 +12,21 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
+import java.util.Date;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
-// 3 Tests
+// 6 Tests
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -27,6 +36,16 @@ public class UserServiceIntegrationTests {
     UserService userService;
     @SpyBean
     UserRepository userRepository;
+    @Autowired
+    RegisteredEmailFilter registeredEmailFilter;
+    @Autowired
+    SessionService sessionService;
+    @Autowired
+    WaitlistService waitlistService;
+    @Autowired
+    SessionRepository sessionRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
 
     private final User user1 = User.builder().id(1L).admin(false).email("yoga@studio.com").firstName("Admin").lastName("Admin").password("$2a$10$.Hsa/ZjUVaHqi0tp9xieMeewrnZxrZ5pQRzddUXE/WjDu2ZThe6Iq").build();
 
@@ -79,4 +98,50 @@ public class UserServiceIntegrationTests {
         User userAfterDeletion = userRepository.findById(1L).orElse(null);
         assertThat(userAfterDeletion).isNull();
     }
+
+    @Test
+    @DisplayName("When .delete() is committed, the email of the deleted user should leave the registered email filter")
+    void testDelete_Committed_EmailLeavesFilter() {
+        // Arrange
+        registeredEmailFilter.rebuild();
+        assertThat(registeredEmailFilter.mightBeTaken(user1.getEmail())).isTrue();
+        // Act
+        userService.delete(1L);
+        // Assert
+        assertThat(registeredEmailFilter.mightBeTaken(user1.getEmail())).isFalse();
+    }
+
+    @Test
+    @DisplayName("When the deletion of .delete() fails, the email of the user should stay in the registered email filter")
+    void testDelete_Failed_EmailStaysInFilter() {
+        // Arrange
+        registeredEmailFilter.rebuild();
+        doThrow(new DataIntegrityViolationException("fk")).when(userRepository).deleteById(1L);
+        // Act
+        assertThrows(DataIntegrityViolationException.class, () -> userService.delete(1L));
+        // Assert
+        assertThat(registeredEmailFilter.mightBeTaken(user1.getEmail())).isTrue();
+        assertThat(userRepository.findById(1L)).isPresent();
+    }
+
+    @Test
+    @DisplayName("When the user targeted by .delete() is booked on a session and waiting for another, the deletion should succeed and free the seat")
+    void testDelete_BookedUser_SeatReleased() {
+        // Arrange : user 1 holds the only seat of session 1 and waits for the full session 2
+        User member = userRepository.save(User.builder().email("member@studio.com").firstName("member").lastName("member").password("aeazezeaeazeae").admin(false).build());
+        Session session1 = sessionRepository.save(Session.builder().name("session1Name").description("session1Description").date(new Date()).capacity(1).users(new ArrayList<>()).build());
+        Session session2 = sessionRepository.save(Session.builder().name("session2Name").description("session2Description").date(new Date()).capacity(1).users(new ArrayList<>()).build());
+        sessionService.participate(session1.getId(), 1L);
+        sessionService.participate(session2.getId(), member.getId());
+        waitlistService.join(session2.getId(), 1L);
+        registeredEmailFilter.rebuild();
+        // Act
+        userService.delete(1L);
+        // Assert
+        assertThat(userRepository.findById(1L)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT seats_taken FROM SESSIONS WHERE id = ?", Integer.class, session1.getId())).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE user_id = 1", Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM WAITLIST WHERE user_id = 1", Integer.class)).isZero();
+        assertThat(registeredEmailFilter.mightBeTaken(user1.getEmail())).isFalse();
+    }
 }
@@ -1,14 +1,22 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -17,7 +25,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
-// 3 Tests
+// 4 Tests
 
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTests {
@@ -25,6 +33,16 @@ public class UserServiceTests {
     private UserService userService;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private SessionRepository sessionRepository;
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+    @Mock
+    private RefreshTokenStore refreshTokenStore;
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     private final User user1 = User.builder().id(1L).admin(true).email("ced@ced.com").firstName("john").lastName("doe").password("aeazezeaeazeae").build();
 
@@ -64,15 +82,38 @@ public class UserServiceTests {
     // -------
 
     @Test
-    @DisplayName("When .delete() is called with a userId, repo.deleteById() should be called")
+    @DisplayName("When .delete() is called with a userId, the bookings should be released then repo.deleteById() called, the revocations waiting for the commit")
     void testDelete_TheDeleteIdMethodOfTheUserRepoShouldBeCalled() {
         // Arrange
         // needs to use this syntax cause when(userRepository.deleteById(anyLong())).doNothing(); generates an IDE alert
         // when trying to mock methods returning void
         doNothing().when(userRepository).deleteById(anyLong());
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user1));
+        when(sessionRepository.lockBookedSessions(1L)).thenReturn(Collections.singletonList(5L));
         // Act
         userService.delete(1L);
         // Assert : repo.deletebyid should have been called with service.delete passed parameter
-        verify(userRepository, times(1)).deleteById(1L);
+        InOrder inOrder = inOrder(sessionRepository, userRepository);
+        inOrder.verify(sessionRepository, times(1)).removeParticipations(1L, Collections.singletonList(5L));
+        inOrder.verify(userRepository, times(1)).deleteById(1L);
+        // nothing in memory changes before the commit
+        verifyNoInteractions(userDetailsService, refreshTokenStore, tokenRevocationList);
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        assertThat(((SeatReleasedEvent) events.getAllValues().get(0)).getSessionId()).isEqualTo(5L);
+        UserDeletedEvent userDeleted = (UserDeletedEvent) events.getAllValues().get(1);
+        assertThat(userDeleted.getUserId()).isEqualTo(1L);
+        assertThat(userDeleted.getEmail()).isEqualTo(user1.getEmail());
+    }
+
+    @Test
+    @DisplayName("When a user deletion is committed, the cached principal should be dropped and the user's tokens refused")
+    void testOnUserDeleted_TokensRevokedAndCacheEvicted() {
+        // Act
+        userService.onUserDeleted(new UserDeletedEvent(1L, user1.getEmail()));
+        // Assert
+        verify(userDetailsService, times(1)).evictById(1L);
+        verify(refreshTokenStore, times(1)).revokeUser(1L);
+        verify(tokenRevocationList, times(1)).revokeUser(1L);
     }
 }
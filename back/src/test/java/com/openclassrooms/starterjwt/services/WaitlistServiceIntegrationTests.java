@@ -0,0 +1,175 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.SessionFullException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.BulkParticipationResponse;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// 7 Tests
+
+@SpringBootTest
+@Sql(scripts = "classpath:sql/reset-database.sql")
+public class WaitlistServiceIntegrationTests {
+    @Autowired
+    private WaitlistService waitlistService;
+    @Autowired
+    private SessionService sessionService;
+    @Autowired
+    private WaitlistPromoter waitlistPromoter;
+    @Autowired
+    private SessionRepository sessionRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final User user1 = User.builder().id(1L).admin(false).email("user1@ced.com").firstName("user1Fn").lastName("user1Ln").password("aeazezeaeazeae").build();
+    private final User user2 = User.builder().id(2L).admin(false).email("user2@ced.com").firstName("user2Fn").lastName("user2Ln").password("aeazezeaeazeae").build();
+    private final User user3 = User.builder().id(3L).admin(false).email("user3@ced.com").firstName("user3Fn").lastName("user3Ln").password("aeazezeaeazeae").build();
+    private final User user4 = User.builder().id(4L).admin(false).email("user4@ced.com").firstName("user4Fn").lastName("user4Ln").password("aeazezeaeazeae").build();
+    private final Teacher teacher1 = Teacher.builder().id(1L).firstName("teacher1Fn").lastName("teacher1Ln").build();
+
+    @BeforeEach
+    void setup(){
+        // a full session : 2 seats, both taken
+        userRepository.saveAll(Arrays.asList(user1, user2, user3, user4));
+        sessionRepository.save(Session.builder().id(1L).name("session1Name").description("session1Description").date(new Date()).teacher(teacher1).capacity(2).users(new ArrayList<>((Arrays.asList(user1, user2)))).build());
+    }
+
+    // -------
+    // Join
+    // -------
+
+    @Test
+    @DisplayName("When users join the waitlist of a full session, they should be given their position in arrival order")
+    void testJoin_FullSession_PositionsInArrivalOrder() {
+        // Act
+        long user3Position = waitlistService.join(1L, 3L);
+        long user4Position = waitlistService.join(1L, 4L);
+        // Assert
+        assertThat(user3Position).isEqualTo(1L);
+        assertThat(user4Position).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("When a user tries to join the waitlist of a session with free seats or one he is booked on, a BadRequestException should be thrown")
+    void testJoin_NotFullOrBooked_ThrowBadRequestException() {
+        // Arrange
+        sessionService.noLongerParticipate(1L, 2L);
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> waitlistService.join(1L, 3L));
+        assertThrows(BadRequestException.class, () -> waitlistService.join(1L, 1L));
+    }
+
+    // -------
+    // Promotion
+    // -------
+
+    @Test
+    @DisplayName("When a participant cancels, the first waiting user should be promoted and the next one should move up")
+    void testPromotePending_SeatReleased_FirstUserPromoted() {
+        // Arrange
+        waitlistService.join(1L, 3L);
+        waitlistService.join(1L, 4L);
+        // Act
+        sessionService.noLongerParticipate(1L, 1L);
+        waitlistPromoter.promotePending();
+        // Assert
+        assertThat(participants(1L)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(seatsTaken(1L)).isEqualTo(2);
+        assertThat(waitlistService.getPosition(1L, 4L)).isEqualTo(1L);
+        assertThrows(NotFoundException.class, () -> waitlistService.getPosition(1L, 3L));
+    }
+
+    @Test
+    @DisplayName("When more seats are released than users are waiting, every waiting user should be promoted and the waitlist emptied")
+    void testPromotePending_SeveralSeatsReleased_WholeWaitlistPromoted() {
+        // Arrange
+        waitlistService.join(1L, 3L);
+        waitlistService.join(1L, 4L);
+        // Act
+        sessionService.noLongerParticipate(1L, 1L);
+        sessionService.noLongerParticipate(1L, 2L);
+        waitlistPromoter.promotePending();
+        waitlistPromoter.promotePending();
+        // Assert
+        assertThat(participants(1L)).containsExactlyInAnyOrder(3L, 4L);
+        assertThat(seatsTaken(1L)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM WAITLIST", Integer.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("When a waiting user leaves the waitlist, the released seat should go to the next one")
+    void testPromotePending_UserLeftWaitlist_NextUserPromoted() {
+        // Arrange
+        waitlistService.join(1L, 3L);
+        waitlistService.join(1L, 4L);
+        waitlistService.leave(1L, 3L);
+        // Act
+        sessionService.noLongerParticipate(1L, 1L);
+        waitlistPromoter.promotePending();
+        // Assert
+        assertThat(participants(1L)).containsExactlyInAnyOrder(2L, 4L);
+        assertThat(seatsTaken(1L)).isEqualTo(2);
+    }
+
+    // -------
+    // Queue jumping
+    // -------
+
+    @Test
+    @DisplayName("When a seat is released while users are waiting, a direct booking should be refused and the seat should go to the first waiting user")
+    void testParticipate_SeatReleasedWithWaitlist_ThrowSessionFullException() {
+        // Arrange
+        waitlistService.join(1L, 3L);
+        sessionService.noLongerParticipate(1L, 1L);
+        // Act & Assert
+        assertThrows(SessionFullException.class, () -> sessionService.participate(1L, 4L));
+        waitlistPromoter.promotePending();
+        assertThat(participants(1L)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(seatsTaken(1L)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("When a seat is released while users are waiting, a bulk booking should reject every user and the latecomer should still be able to queue")
+    void testParticipateAll_SeatReleasedWithWaitlist_EveryUserRejected() {
+        // Arrange
+        waitlistService.join(1L, 3L);
+        sessionService.noLongerParticipate(1L, 1L);
+        // Act
+        BulkParticipationResponse response = sessionService.participateAll(1L, Arrays.asList(1L, 4L));
+        long position = waitlistService.join(1L, 4L);
+        // Assert
+        assertThat(response.getRejected()).isEqualTo(2);
+        assertThat(participants(1L)).containsExactly(2L);
+        assertThat(position).isEqualTo(2L);
+    }
+
+    private List<Long> participants(Long sessionId) {
+        return jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId);
+    }
+
+    private int seatsTaken(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT seats_taken FROM SESSIONS WHERE id = ?", Integer.class, sessionId);
+    }
+}
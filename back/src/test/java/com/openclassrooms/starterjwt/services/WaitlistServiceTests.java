@@ -0,0 +1,98 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+// 5 Tests
+
+@ExtendWith(MockitoExtension.class)
+public class WaitlistServiceTests {
+    @InjectMocks
+    private WaitlistService waitlistService;
+    @Mock
+    private WaitlistRepository waitlistRepository;
+    @Mock
+    private SessionRepository sessionRepository;
+    @Mock
+    private UserRepository userRepository;
+
+    private final WaitlistEntry entry = WaitlistEntry.builder().id(7L).sessionId(1L).userId(3L).build();
+
+    // -------
+    // Join
+    // -------
+
+    @Test
+    @DisplayName("When a user joins the waitlist of a full session, his position should be returned")
+    void testJoin_FullSession_ReturnPosition() {
+        // Arrange
+        when(waitlistRepository.enqueue(1L, 3L)).thenReturn(1);
+        when(waitlistRepository.findBySessionIdAndUserId(1L, 3L)).thenReturn(Optional.of(entry));
+        when(waitlistRepository.countBySessionIdAndIdLessThanEqual(1L, 7L)).thenReturn(2L);
+        // Act
+        long position = waitlistService.join(1L, 3L);
+        // Assert
+        assertThat(position).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("When a user joins the waitlist of a non existent session, a NotFoundException should be thrown")
+    void testJoin_UnknownSession_ThrowNotFoundException() {
+        // Arrange
+        when(waitlistRepository.enqueue(1L, 3L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> waitlistService.join(1L, 3L));
+    }
+
+    @Test
+    @DisplayName("When nothing is queued for an existing session and user (free seats, already booked or queued), a BadRequestException should be thrown")
+    void testJoin_NotQueued_ThrowBadRequestException() {
+        // Arrange
+        when(waitlistRepository.enqueue(1L, 3L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(3L)).thenReturn(true);
+        // Act & Assert
+        assertThrows(BadRequestException.class, () -> waitlistService.join(1L, 3L));
+        verify(waitlistRepository, never()).findBySessionIdAndUserId(anyLong(), anyLong());
+    }
+
+    // -------
+    // Leave & Position
+    // -------
+
+    @Test
+    @DisplayName("When a user leaves a waitlist he isn't in, a NotFoundException should be thrown")
+    void testLeave_NotQueued_ThrowNotFoundException() {
+        // Arrange
+        when(waitlistRepository.dequeue(1L, 3L)).thenReturn(0);
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> waitlistService.leave(1L, 3L));
+    }
+
+    @Test
+    @DisplayName("When the position of a user who isn't queued is requested, a NotFoundException should be thrown")
+    void testGetPosition_NotQueued_ThrowNotFoundException() {
+        // Arrange
+        when(waitlistRepository.findBySessionIdAndUserId(1L, 3L)).thenReturn(Optional.empty());
+        // Act & Assert
+        assertThrows(NotFoundException.class, () -> waitlistService.getPosition(1L, 3L));
+        verify(waitlistRepository, never()).countBySessionIdAndIdLessThanEqual(anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.starterjwt.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 2 Tests
+
+public class BloomFilterTests {
+
+    @Test
+    @DisplayName("when keys have been added, .mightContain should always find them")
+    void testMightContain_AddedKeys_ReturnTrue() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        // Assert
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("key" + i)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("when the filter holds its expected number of keys, unknown keys should rarely be reported")
+    void testMightContain_UnknownKeys_FalsePositiveRateBounded() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("unknown" + i)) {
+                falsePositives++;
+            }
+        }
+        // Assert
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
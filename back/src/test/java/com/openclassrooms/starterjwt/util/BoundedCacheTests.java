@@ -0,0 +1,124 @@
+package com.openclassrooms.starterjwt.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 7 Tests
+
+public class BoundedCacheTests {
+
+    private final long inOneMinute = System.currentTimeMillis() + 60000;
+
+    @Test
+    @DisplayName("when an entry is still valid, .get should return it")
+    void testGet_ValidEntry_ReturnValue() {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("key", "value", inOneMinute);
+        // Act & Assert
+        assertThat(cache.get("key")).isEqualTo("value");
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("when an entry has expired, .get should drop it and return null")
+    void testGet_ExpiredEntry_ReturnNull() throws InterruptedException {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("key", "value", System.currentTimeMillis() + 20);
+        Thread.sleep(40);
+        // Act & Assert
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("when the cache is full, the entries closest to their deadline should be evicted first, whatever their insertion order")
+    void testPut_FullCache_EvictSoonestToExpire() {
+        // Arrange : the first entry is the one that lives the longest
+        BoundedCache<Integer, String> cache = new BoundedCache<>(16);
+        cache.put(-1, "longLived", inOneMinute + 3600000);
+        for (int i = 0; i < 15; i++) {
+            cache.put(i, "value" + i, inOneMinute + i);
+        }
+        // Act
+        cache.put(100, "value100", inOneMinute + 100);
+        // Assert
+        assertThat(cache.size()).isEqualTo(16);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.get(-1)).isEqualTo("longLived");
+        assertThat(cache.get(0)).isNull();
+        assertThat(cache.get(100)).isEqualTo("value100");
+    }
+
+    @Test
+    @DisplayName("when the cache is full, adding a new entry should evict older ones and never exceed the max size")
+    void testPut_FullCache_SizeStaysBounded() {
+        // Arrange
+        BoundedCache<Integer, String> cache = new BoundedCache<>(32);
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i, inOneMinute);
+        }
+        // Assert
+        assertThat(cache.size()).isLessThanOrEqualTo(32);
+        assertThat(cache.getEvictions()).isGreaterThanOrEqualTo(1000 - 32);
+        assertThat(cache.get(999)).isEqualTo("value999");
+    }
+
+    @Test
+    @DisplayName("when many threads fill the cache at once, it should evict and stay within its max size give or take one put per thread")
+    void testPut_ConcurrentPutsOnFullCache_StayBounded() throws InterruptedException {
+        // Arrange
+        int threads = 8;
+        BoundedCache<String, String> cache = new BoundedCache<>(100);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // Act
+        for (int thread = 0; thread < threads; thread++) {
+            String prefix = "thread" + thread + "-";
+            executor.execute(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    cache.put(prefix + i, "value", inOneMinute + i);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        // Assert
+        assertThat(cache.size()).isLessThanOrEqualTo(100 + threads);
+        assertThat(cache.getEvictions()).isPositive();
+    }
+
+    @Test
+    @DisplayName("when a cache is sized to zero, nothing should be stored")
+    void testPut_ZeroSizedCache_NothingStored() {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(0);
+        // Act
+        cache.put("key", "value", inOneMinute);
+        // Assert
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("when .removeIf is called, only the matching entries should be removed")
+    void testRemoveIf_RemoveMatchingValuesOnly() {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("key1", "keep", inOneMinute);
+        cache.put("key2", "drop", inOneMinute);
+        // Act
+        cache.removeIf("drop"::equals);
+        // Assert
+        assertThat(cache.get("key1")).isEqualTo("keep");
+        assertThat(cache.get("key2")).isNull();
+    }
+}
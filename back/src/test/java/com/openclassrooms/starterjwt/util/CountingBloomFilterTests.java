@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 3 Tests
+
+public class CountingBloomFilterTests {
+
+    @Test
+    @DisplayName("when keys have been added, .mightContain should always find them")
+    void testMightContain_AddedKeys_ReturnTrue() {
+        // Arrange
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        // Assert
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("key" + i)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("when a key is removed, it should no longer be found while the other keys still are")
+    void testRemove_AddedKey_NoLongerFound() {
+        // Arrange
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key" + i);
+        }
+        filter.add("removed");
+        // Act
+        filter.remove("removed");
+        // Assert
+        assertThat(filter.mightContain("removed")).isFalse();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("key" + i)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("when a key that was never added is removed, the keys added before should still be found")
+    void testRemove_UnknownKey_NoFalseNegative() {
+        // Arrange
+        CountingBloomFilter filter = new CountingBloomFilter(10, 0.01);
+        filter.add("key");
+        // Act
+        filter.remove("neverAdded");
+        // Assert
+        assertThat(filter.mightContain("key")).isTrue();
+    }
+}
@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 6 Tests
+
+public class TokenBucketLimiterTests {
+
+    @Test
+    @DisplayName("when a key has used its whole burst, .tryAcquire should return the wait until the next token")
+    void testTryAcquire_BurstExhausted_ReturnWait() {
+        // Arrange
+        TokenBucketLimiter limiter = new TokenBucketLimiter(3, 60000, 100);
+        // Act
+        long first = limiter.tryAcquire("key");
+        limiter.tryAcquire("key");
+        long third = limiter.tryAcquire("key");
+        long fourth = limiter.tryAcquire("key");
+        // Assert
+        assertThat(first).isZero();
+        assertThat(third).isZero();
+        assertThat(fourth).isBetween(1L, 60000L);
+        assertThat(limiter.tryAcquire("otherKey")).isZero();
+    }
+
+    @Test
+    @DisplayName("when the refill interval has elapsed, .tryAcquire should hand out a new token")
+    void testTryAcquire_AfterRefill_ReturnZero() throws InterruptedException {
+        // Arrange
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 20, 100);
+        limiter.tryAcquire("key");
+        // Act
+        Thread.sleep(40);
+        // Assert
+        assertThat(limiter.tryAcquire("key")).isZero();
+    }
+
+    @Test
+    @DisplayName("when buckets have refilled completely, .sweep should drop them")
+    void testSweep_RefilledBuckets_Removed() throws InterruptedException {
+        // Arrange
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 20, 100);
+        limiter.tryAcquire("key1");
+        limiter.tryAcquire("key2");
+        Thread.sleep(40);
+        // Act
+        int removed = limiter.sweep();
+        // Assert
+        assertThat(removed).isEqualTo(2);
+        assertThat(limiter.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("when maxKeys buckets are tracked, .tryAcquire should limit the new keys with one shared bucket instead of tracking them")
+    void testTryAcquire_MaxKeysReached_NewKeysShareOverflowBucket() {
+        // Arrange
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 60000, 2);
+        limiter.tryAcquire("key1");
+        limiter.tryAcquire("key2");
+        // Act
+        long firstNewKey = limiter.tryAcquire("key3");
+        long secondNewKey = limiter.tryAcquire("key4");
+        // Assert
+        assertThat(firstNewKey).isZero();
+        assertThat(secondNewKey).isPositive();
+        assertThat(limiter.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("when a sweep has dropped refilled buckets, .tryAcquire should track new keys again")
+    void testTryAcquire_AfterSweep_NewKeysTracked() throws InterruptedException {
+        // Arrange
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 20, 1);
+        limiter.tryAcquire("key1");
+        Thread.sleep(40);
+        limiter.sweep();
+        // Act
+        long newKey = limiter.tryAcquire("key2");
+        // Assert
+        assertThat(newKey).isZero();
+        assertThat(limiter.tryAcquire("key3")).isZero();
+        assertThat(limiter.tryAcquire("key2")).isPositive();
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("when many threads hit the same key at once, no more than the burst should be granted")
+    void testTryAcquire_ConcurrentAttempts_NeverExceedBurst() throws InterruptedException {
+        // Arrange
+        TokenBucketLimiter limiter = new TokenBucketLimiter(10, 60000, 100);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // Act
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                if (limiter.tryAcquire("key") == 0) {
+                    granted.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        // Assert
+        assertThat(granted.get()).isEqualTo(10);
+    }
+}
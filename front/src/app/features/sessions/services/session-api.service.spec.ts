@@ -1,4 +1,4 @@
-import { HttpClient, HttpClientModule } from '@angular/common/http';
+import { HttpClient, HttpClientModule, HttpHeaders, HttpParams, HttpResponse } from '@angular/common/http';
 import { TestBed } from '@angular/core/testing';
 import { expect } from '@jest/globals';
 
@@ -40,7 +40,7 @@ describe('SessionsService', () => {
     it('should send a request to the expected endpoint & an observable broadcasting an array of sessions should be returned', () => {
       const targetEndpoint = `${pathService}`
 
-      jest.spyOn(httpClient, 'get').mockReturnValue(of([{...yogaSessionMock1}, {...yogaSessionMock2}]))
+      jest.spyOn(httpClient, 'get').mockReturnValue(of(new HttpResponse({ body: [{...yogaSessionMock1}, {...yogaSessionMock2}] })))
 
       expect(httpClient.get).not.toHaveBeenCalled()
 
@@ -49,7 +49,25 @@ describe('SessionsService', () => {
       service.all().subscribe((response) => {
         subResponse = response
       })
-      expect(httpClient.get).toHaveBeenCalledWith(targetEndpoint)
+      expect(httpClient.get).toHaveBeenCalledTimes(1)
+      expect(httpClient.get).toHaveBeenCalledWith(targetEndpoint, { params: new HttpParams(), observe: 'response' })
+      expect(JSON.stringify(subResponse)).toEqual(JSON.stringify([yogaSessionMock1, yogaSessionMock2]))
+    });
+
+    it('should follow the next cursor header until the last page & broadcast the sessions of every page', () => {
+      const targetEndpoint = `${pathService}`
+
+      jest.spyOn(httpClient, 'get')
+        .mockReturnValueOnce(of(new HttpResponse({ body: [{...yogaSessionMock1}], headers: new HttpHeaders({ 'X-Next-Cursor': 'cursor1' }) })))
+        .mockReturnValueOnce(of(new HttpResponse({ body: [{...yogaSessionMock2}] })))
+
+      // [!] evaluations into a subscribe callback are ignored
+      let subResponse
+      service.all().subscribe((response) => {
+        subResponse = response
+      })
+      expect(httpClient.get).toHaveBeenCalledTimes(2)
+      expect(httpClient.get).toHaveBeenLastCalledWith(targetEndpoint, { params: new HttpParams().set('cursor', 'cursor1'), observe: 'response' })
       expect(JSON.stringify(subResponse)).toEqual(JSON.stringify([yogaSessionMock1, yogaSessionMock2]))
     });
   })
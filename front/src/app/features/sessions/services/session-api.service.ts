@@ -1,7 +1,9 @@
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Injectable } from '@angular/core';
-import { Observable } from 'rxjs';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, map, reduce } from 'rxjs/operators';
 import { Session } from '../interfaces/session.interface';
+import { SessionPage } from '../interfaces/sessionPage.interface';
 
 @Injectable({
   providedIn: 'root'
@@ -10,11 +12,24 @@ export class SessionApiService {
 
   private pathService = 'api/session';
 
+  private nextCursorHeader = 'X-Next-Cursor';
+
   constructor(private httpClient: HttpClient) {
   }
 
+  // the API returns one bounded page at a time : follows the cursor until the last page
   public all(): Observable<Session[]> {
-    return this.httpClient.get<Session[]>(this.pathService);
+    return this.page().pipe(
+      expand((page) => page.nextCursor ? this.page(page.nextCursor) : EMPTY),
+      reduce((sessions: Session[], page) => sessions.concat(page.sessions), [])
+    );
+  }
+
+  public page(cursor?: string): Observable<SessionPage> {
+    const params = cursor ? new HttpParams().set('cursor', cursor) : new HttpParams();
+    return this.httpClient.get<Session[]>(this.pathService, { params, observe: 'response' }).pipe(
+      map((response) => ({ sessions: response.body ?? [], nextCursor: response.headers.get(this.nextCursorHeader) }))
+    );
   }
 
   public detail(id: string): Observable<Session> {
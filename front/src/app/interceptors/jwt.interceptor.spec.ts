@@ -0,0 +1,104 @@
+import { HttpClient, HTTP_INTERCEPTORS } from '@angular/common/http';
+import { HttpClientTestingModule, HttpTestingController } from '@angular/common/http/testing';
+import { TestBed } from '@angular/core/testing';
+import { expect } from '@jest/globals';
+
+import { JwtInterceptor } from './jwt.interceptor';
+import { SessionService } from '../services/session.service';
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
+import { mockSessionInformationAdmin } from '../testing/mockDatas';
+
+const mockSessionInformation : SessionInformation = {...mockSessionInformationAdmin, token: 'expiredToken', refreshToken: 'refreshToken1'}
+
+const renewedSessionInformation : SessionInformation = {...mockSessionInformationAdmin, token: 'renewedToken', refreshToken: 'refreshToken2'}
+
+describe('JwtInterceptor', () => {
+  let httpClient : HttpClient;
+  let httpTestingController : HttpTestingController;
+  let sessionService : SessionService;
+
+  beforeEach(() => {
+    TestBed.configureTestingModule({
+      imports:[
+        HttpClientTestingModule
+      ],
+      providers: [
+        { provide: HTTP_INTERCEPTORS, useClass: JwtInterceptor, multi: true },
+      ]
+    });
+    httpClient = TestBed.inject(HttpClient);
+    httpTestingController = TestBed.inject(HttpTestingController);
+    sessionService = TestBed.inject(SessionService);
+    sessionService.logIn({...mockSessionInformation});
+  });
+
+  afterEach(() => {
+    httpTestingController.verify();
+  });
+
+  // --------
+  // Access token / Unit Test
+  // --------
+
+  describe('when a logged user sends a request', () => {
+    it('should add the access token to the request', () => {
+      httpClient.get('api/session').subscribe();
+
+      const request = httpTestingController.expectOne('api/session');
+      expect(request.request.headers.get('Authorization')).toEqual('Bearer expiredToken');
+      request.flush([]);
+    });
+  })
+
+  // --------
+  // Refresh on 401 / Unit Test
+  // --------
+
+  describe('when the access token is refused with a 401', () => {
+    it('should exchange the refresh token once and send every refused request again with the new token', () => {
+      let firstResponse, secondResponse
+      httpClient.get('api/session').subscribe((response) => firstResponse = response);
+      httpClient.get('api/teacher').subscribe((response) => secondResponse = response);
+
+      httpTestingController.expectOne('api/session').flush(null, { status: 401, statusText: 'Unauthorized' });
+      httpTestingController.expectOne('api/teacher').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+      const refresh = httpTestingController.expectOne('api/auth/refresh');
+      expect(refresh.request.body).toEqual({ refreshToken: 'refreshToken1' });
+      refresh.flush({...renewedSessionInformation});
+
+      const retriedSession = httpTestingController.expectOne('api/session');
+      expect(retriedSession.request.headers.get('Authorization')).toEqual('Bearer renewedToken');
+      retriedSession.flush(['session']);
+      const retriedTeacher = httpTestingController.expectOne('api/teacher');
+      expect(retriedTeacher.request.headers.get('Authorization')).toEqual('Bearer renewedToken');
+      retriedTeacher.flush(['teacher']);
+
+      expect(firstResponse).toEqual(['session']);
+      expect(secondResponse).toEqual(['teacher']);
+      expect(sessionService.sessionInformation!.refreshToken).toEqual('refreshToken2');
+    });
+
+    it('should log the user out and return the 401 when the refresh token is refused too', () => {
+      let status
+      httpClient.get('api/session').subscribe({ error: (error) => status = error.status });
+
+      httpTestingController.expectOne('api/session').flush(null, { status: 401, statusText: 'Unauthorized' });
+      httpTestingController.expectOne('api/auth/refresh').flush(null, { status: 401, statusText: 'Unauthorized' });
+
+      expect(status).toEqual(401);
+      expect(sessionService.isLogged).toBeFalsy();
+    });
+
+    it('should not try to refresh when the request fails for another reason', () => {
+      let status
+      httpClient.get('api/session').subscribe({ error: (error) => status = error.status });
+
+      httpTestingController.expectOne('api/session').flush(null, { status: 404, statusText: 'Not Found' });
+
+      httpTestingController.expectNone('api/auth/refresh');
+      expect(status).toEqual(404);
+      expect(sessionService.isLogged).toBeTruthy();
+    });
+  })
+});
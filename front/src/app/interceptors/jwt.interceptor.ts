@@ -1,19 +1,76 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { HttpBackend, HttpClient, HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
 import { Injectable } from "@angular/core";
+import { Observable, throwError } from "rxjs";
+import { catchError, finalize, shareReplay, switchMap, tap } from "rxjs/operators";
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
+/**
+ * Adds the access token to every request. Access tokens are short lived : when one is refused with a 401,
+ * the refresh token is exchanged for new tokens once, then the request is sent again.
+ */
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
-  constructor(private sessionService: SessionService) {}
-
-  public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+  private refreshPath = 'api/auth/refresh';
+
+  // the refresh call must not go through this interceptor again
+  private refreshClient: HttpClient;
+
+  // shared by the requests refused together : a refresh token can only be redeemed once
+  private refreshInProgress: Observable<SessionInformation> | null = null;
+
+  constructor(private sessionService: SessionService, httpBackend: HttpBackend) {
+    this.refreshClient = new HttpClient(httpBackend);
+  }
+
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    if (!this.sessionService.isLogged) {
+      return next.handle(request);
+    }
+
+    const sentToken = this.sessionService.sessionInformation!.token;
+    return next.handle(this.withToken(request, sentToken)).pipe(
+      catchError((error) => {
+        if (!(error instanceof HttpErrorResponse) || error.status !== 401 || !this.sessionService.isLogged) {
+          return throwError(() => error);
+        }
+        // another request may already have renewed the token this one was sent with
+        const currentToken = this.sessionService.sessionInformation!.token;
+        if (currentToken !== sentToken) {
+          return next.handle(this.withToken(request, currentToken));
+        }
+        if (!this.sessionService.sessionInformation!.refreshToken) {
+          return throwError(() => error);
+        }
+        return this.refresh().pipe(
+          catchError(() => throwError(() => error)),
+          switchMap((sessionInformation) => next.handle(this.withToken(request, sessionInformation.token))),
+        );
+      })
+    );
+  }
+
+  private withToken(request: HttpRequest<any>, token: string): HttpRequest<any> {
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${token}`,
+      },
+    });
+  }
+
+  private refresh(): Observable<SessionInformation> {
+    if (!this.refreshInProgress) {
+      this.refreshInProgress = this.refreshClient
+        .post<SessionInformation>(this.refreshPath, { refreshToken: this.sessionService.sessionInformation!.refreshToken })
+        .pipe(
+          tap({
+            next: (sessionInformation) => this.sessionService.logIn(sessionInformation),
+            error: () => this.sessionService.logOut(),
+          }),
+          finalize(() => this.refreshInProgress = null),
+          shareReplay(1),
+        );
     }
-    return next.handle(request);
+    return this.refreshInProgress;
   }
 }